@@ -36,7 +36,17 @@ public class ActivationUtils {
 	 * @return value of positive/negative label
 	 */
 	public static double labelValue(Sample sample) {
-		return sample.isPositiveUserData() ? 1.0 : -1.0;
+		return labelValue(sample.isPositiveUserData());
+	}
+
+	/**
+	 * Return value of label of a sample.
+	 * 
+	 * @param isPositiveUserData true if the sample belongs to the positive user
+	 * @return value of positive/negative label
+	 */
+	public static double labelValue(boolean isPositiveUserData) {
+		return isPositiveUserData ? 1.0 : -1.0;
 			//ActivationUtils.AMPLITUDE : -ActivationUtils.AMPLITUDE;	
 	}
 
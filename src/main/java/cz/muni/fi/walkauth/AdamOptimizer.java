@@ -0,0 +1,86 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Adam (Kingma and Ba): RMSProp combined with momentum, with both moving
+ * averages corrected for their initialization to zero.
+ */
+public final class AdamOptimizer implements Optimizer {
+
+    public static final double DEFAULT_BETA1 = 0.9;
+
+    public static final double DEFAULT_BETA2 = 0.999;
+
+    public static final double DEFAULT_LEARNING_RATE = 0.001;
+
+    // protects division of weights which never had a gradient
+    private static final double EPSILON = 1e-8;
+
+    private final double beta1;
+
+    private final double beta2;
+
+    // moving average of gradient of each weight
+    private Matrix[] means;
+
+    // moving average of squared gradient of each weight
+    private Matrix[] meanSquares;
+
+    // beta1 and beta2 to the power of number of steps
+    private double beta1Power;
+    private double beta2Power;
+
+    /**
+     * Creates Adam with the default decays.
+     */
+    public AdamOptimizer() {
+        this(DEFAULT_BETA1, DEFAULT_BETA2);
+    }
+
+    /**
+     * @param beta1 decay of the average of gradient, in [0, 1)
+     * @param beta2 decay of the average of squared gradient, in [0, 1)
+     */
+    public AdamOptimizer(double beta1, double beta2) {
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+            throw new IllegalArgumentException("Decays must be in [0, 1), but they are " + beta1 + " and " + beta2 + ".");
+        }
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+    }
+
+    @Override
+    public double getDefaultLearningRate() {
+        return DEFAULT_LEARNING_RATE;
+    }
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        means = Optimizer.zerosLike(weights);
+        meanSquares = Optimizer.zerosLike(weights);
+        beta1Power = 1;
+        beta2Power = 1;
+    }
+
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        beta1Power *= beta1;
+        beta2Power *= beta2;
+        // bias corrections of both averages folded into the step size
+        double stepSize = speed * Math.sqrt(1 - beta2Power) / (1 - beta1Power);
+        double epsilon = EPSILON * Math.sqrt(1 - beta2Power);
+
+        for (int l = 0; l < weights.length; l++) {
+            double[] w = weights[l].getData();
+            double[] g = gradient[l].getData();
+            double[] m = means[l].getData();
+            double[] v = meanSquares[l].getData();
+            for (int i = 0; i < w.length; i++) {
+                m[i] = beta1 * m[i] + (1 - beta1) * g[i];
+                v[i] = beta2 * v[i] + (1 - beta2) * g[i] * g[i];
+                w[i] -= stepSize * m[i] / (Math.sqrt(v[i]) + epsilon);
+            }
+        }
+    }
+}
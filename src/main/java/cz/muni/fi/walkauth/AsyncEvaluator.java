@@ -0,0 +1,291 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Evaluates snapshots of weights on a background thread while the training
+ * continues, and logs the learning progress through LogUtils.
+ *
+ * The queue holds at most one snapshot. When the evaluation falls behind, a
+ * new snapshot overwrites the waiting one, so only the most recent weights
+ * are evaluated and the training never waits. There are just two snapshot
+ * buffers (the waiting one and the one being evaluated), which are reused;
+ * the buffer being evaluated is never modified.
+ *
+ * The evaluator also keeps a copy of the weights with the lowest validation
+ * error evaluated so far. For reproducible training, {@link #await()} waits
+ * until the submitted weights are evaluated.
+ */
+final class AsyncEvaluator implements AutoCloseable {
+
+    /**
+     * Evaluation of the weights after some step.
+     */
+    static final class Result {
+
+        private final int step;
+        private final EvaluationReport validation;
+        private final EvaluationReport training;
+
+        Result(int step, EvaluationReport validation, EvaluationReport training) {
+            this.step = step;
+            this.validation = validation;
+            this.training = training;
+        }
+
+        int getStep() {
+            return step;
+        }
+
+        EvaluationReport getValidation() {
+            return validation;
+        }
+
+        EvaluationReport getTraining() {
+            return training;
+        }
+    }
+
+    /**
+     * Copy of weights after some step.
+     */
+    private static final class Snapshot {
+
+        private final Matrix[] weights;
+        private final NeuralNetwork network;
+        private int step;
+
+        Snapshot(Matrix[] weights) {
+            this.weights = new Matrix[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                this.weights[i] = weights[i].copy();
+            }
+            this.network = new NeuralNetwork(this.weights);
+        }
+
+        void set(int step, Matrix[] weights) {
+            this.step = step;
+            for (int i = 0; i < weights.length; i++) {
+                this.weights[i].copyFrom(weights[i]);
+            }
+        }
+    }
+
+    private final ParallelEvaluation evaluation;
+    private final Dataset trainingData;
+    private final Dataset validationData;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // snapshot waiting for evaluation, null if there is none
+    private Snapshot pending;
+    // whether a snapshot is being evaluated
+    private boolean evaluating;
+    // snapshots which are neither waiting nor being evaluated
+    private final ArrayDeque<Snapshot> free = new ArrayDeque<>(2);
+    private boolean closed;
+
+    private volatile Result latest;
+
+    // evaluation with the lowest validation error and its weights, written
+    // only by the thread doing the evaluation
+    private volatile Result best;
+    private final Matrix[] bestWeights;
+    private volatile Throwable failure;
+    private volatile int evaluatedCount;
+
+    private final Thread thread;
+
+    /**
+     * Evaluates the initial weights synchronously and starts the background
+     * thread.
+     *
+     * @param evaluation evaluation used by the background thread
+     * @param weights initial weights
+     * @param trainingData training data
+     * @param validationData validation data
+     */
+    AsyncEvaluator(ParallelEvaluation evaluation, Matrix[] weights, Dataset trainingData, Dataset validationData) {
+        this.evaluation = evaluation;
+        this.trainingData = trainingData;
+        this.validationData = validationData;
+        this.bestWeights = new Matrix[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            bestWeights[i] = weights[i].copy();
+        }
+        Snapshot initial = new Snapshot(weights);
+        evaluate(initial);
+        free.push(initial);
+        free.push(new Snapshot(weights));
+        this.thread = new Thread(this::run, "evaluation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a copy of the weights to the background thread. If the previous
+     * snapshot hasn't been taken yet, it is replaced.
+     *
+     * @param step number of the step after which the weights are taken
+     * @param weights weights to copy
+     */
+    void submit(int step, Matrix[] weights) {
+        checkFailure();
+        lock.lock();
+        try {
+            if (pending == null) {
+                pending = free.pop();
+            }
+            pending.set(step, weights);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the submitted snapshot (if any) is evaluated, so that
+     * {@link #getLatest()} and {@link #getBest()} don't depend on timing of
+     * the background thread.
+     */
+    void await() {
+        lock.lock();
+        try {
+            while ((pending != null || evaluating) && failure == null) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return the most recent completed evaluation
+     */
+    Result getLatest() {
+        checkFailure();
+        return latest;
+    }
+
+    /**
+     * @return completed evaluation with the lowest validation error, the
+     * earliest one in case of a tie
+     */
+    Result getBest() {
+        checkFailure();
+        return best;
+    }
+
+    /**
+     * Copies weights of the best evaluation. The evaluator must be closed, so
+     * that the weights don't change.
+     *
+     * @param target weights overwritten by the best ones
+     */
+    void copyBestWeights(Matrix[] target) {
+        if (!closed || thread.isAlive()) {
+            throw new IllegalStateException("Best weights can be copied only from a closed evaluator.");
+        }
+        for (int i = 0; i < target.length; i++) {
+            target[i].copyFrom(bestWeights[i]);
+        }
+    }
+
+    /**
+     * @return number of completed evaluations, including the initial one
+     */
+    int getEvaluatedCount() {
+        return evaluatedCount;
+    }
+
+    /**
+     * Waits until the waiting snapshot (if any) is evaluated and stops the
+     * background thread. Closing a closed evaluator does nothing.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Snapshot current;
+                lock.lock();
+                try {
+                    while (pending == null && !closed) {
+                        changed.awaitUninterruptibly();
+                    }
+                    if (pending == null) {
+                        return;
+                    }
+                    current = pending;
+                    pending = null;
+                    evaluating = true;
+                } finally {
+                    lock.unlock();
+                }
+
+                evaluate(current);
+
+                lock.lock();
+                try {
+                    free.push(current);
+                    evaluating = false;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (Throwable ex) {
+            // also errors, such as OutOfMemoryError, otherwise await() would
+            // wait for the dead thread forever
+            failure = ex;
+            // wake up threads waiting for the evaluation
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void evaluate(Snapshot snapshot) {
+        EvaluationReport validationReport = evaluation.evaluate(snapshot.network, validationData);
+        EvaluationReport trainingReport = evaluation.evaluate(snapshot.network, trainingData);
+        LogUtils.logLearning(snapshot.step, validationReport, trainingReport);
+        Result result = new Result(snapshot.step, validationReport, trainingReport);
+        if (best == null || validationReport.getError() < best.getValidation().getError()) {
+            for (int i = 0; i < bestWeights.length; i++) {
+                bestWeights[i].copyFrom(snapshot.weights[i]);
+            }
+            best = result;
+        }
+        latest = result;
+        evaluatedCount++;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Evaluation failed.", failure);
+        }
+    }
+}
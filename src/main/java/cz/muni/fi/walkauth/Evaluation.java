@@ -1,5 +1,6 @@
 package cz.muni.fi.walkauth;
 
+import cz.muni.fi.walkauth.preprocessing.Dataset;
 import cz.muni.fi.walkauth.preprocessing.Sample;
 
 /**
@@ -7,6 +8,45 @@ import cz.muni.fi.walkauth.preprocessing.Sample;
  */
 public class Evaluation {
 
+    /**
+     * Evaluates the neural network on given samples. Every sample is passed
+     * through the network only once and all the metrics are derived from the
+     * outputs.
+     *
+     * @param neuralNetwork neural network to evaluate, must have single output
+     * neuron
+     * @param samples samples on which to evaluate the network
+     * @return confusion matrix and error of the network
+     */
+    public static EvaluationReport evaluate(NeuralNetwork neuralNetwork, Sample[] samples) {
+        EvaluationAccumulator accumulator = new EvaluationAccumulator();
+        for (Sample sample : samples) {
+            accumulator.add(neuralNetwork.computeOutput(sample.getEntries()), sample);
+        }
+        return accumulator.toReport();
+    }
+
+    /**
+     * Evaluates the neural network on given data set, see
+     * {@link #evaluate(NeuralNetwork, Sample[])}. Samples are read directly
+     * from the block of the data set.
+     *
+     * @param neuralNetwork neural network to evaluate, must have single output
+     * neuron
+     * @param samples samples on which to evaluate the network
+     * @return confusion matrix and error of the network
+     */
+    public static EvaluationReport evaluate(NeuralNetwork neuralNetwork, Dataset samples) {
+        InferenceContext context = neuralNetwork.createInferenceContext();
+        double[] values = samples.getValues();
+        EvaluationAccumulator accumulator = new EvaluationAccumulator();
+        for (int s = 0; s < samples.size(); s++) {
+            double output = neuralNetwork.computeOutput(values, samples.getOffset(s), context);
+            accumulator.add(output, samples.isPositiveUserData(s));
+        }
+        return accumulator.toReport();
+    }
+
     /**
      * Computes square error function of the neural network on given list of
      * samples.
@@ -17,16 +57,11 @@ public class Evaluation {
      * @return computed error
      */
     public static double computeError(NeuralNetwork neuralNetwork, Sample[] samples) {
-        int n = samples.length;
-        double[] predictedValues = new double[n];
-        double[] actualValues = new double[n];
-        for (int i = 0; i < n; i++) {
-            predictedValues[i] = neuralNetwork.computeOutput(Matrix.columnVector(samples[i].getEntries()));
-            actualValues[i] = ActivationUtils.labelValue(samples[i]);
+        MathUtils.SquareErrorAccumulator error = new MathUtils.SquareErrorAccumulator();
+        for (Sample sample : samples) {
+            error.add(neuralNetwork.computeOutput(sample.getEntries()), ActivationUtils.labelValue(sample));
         }
-
-        double error = MathUtils.squareError(predictedValues, actualValues);
-        return error;
+        return error.squareError();
     }
 
     /**
@@ -38,16 +73,7 @@ public class Evaluation {
      * @return RMSE
      */
     public static double computeRMSE(NeuralNetwork neuralNetwork, Sample[] samples) {
-        int n = samples.length;
-        double[] predictedValues = new double[n];
-        double[] actualValues = new double[n];
-        for (int i = 0; i < n; i++) {
-            predictedValues[i] = neuralNetwork.computeOutput(Matrix.columnVector(samples[i].getEntries()));
-            actualValues[i] = ActivationUtils.labelValue(samples[i]);
-        }
-
-        double error = MathUtils.rmse(predictedValues, actualValues);
-        return error;
+        return evaluate(neuralNetwork, samples).getRMSE();
     }
 
     /**
@@ -58,21 +84,7 @@ public class Evaluation {
      * @return accuracy
      */
     public static double computeAccuracy(NeuralNetwork neuralNetwork, Sample[] samples) {
-        int n = samples.length;
-
-        if (n == 0) {
-            return 0.0;
-        }
-
-        int correctCount = 0;
-        for (int i = 0; i < n; i++) {
-            boolean predictedLabel = neuralNetwork.computeOutput(Matrix.columnVector(samples[i].getEntries())) >= 0;
-            boolean correct = predictedLabel == samples[i].isPositiveUserData();
-            correctCount += correct ? 1 : 0;
-        }
-
-        double accuracy = (float) correctCount / n;
-        return accuracy;
+        return evaluate(neuralNetwork, samples).getAccuracy();
     }
 
     /**
@@ -85,24 +97,7 @@ public class Evaluation {
      * @return precision
      */
     public static double computePrecision(NeuralNetwork neuralNetwork, Sample[] samples) {
-        int truePositives = 0;
-        int allPositives = 0;
-        for (int i = 0; i < samples.length; i++) {
-            boolean predictedLabel = neuralNetwork.computeOutput(Matrix.columnVector(samples[i].getEntries())) >= 0;
-            if (predictedLabel) {
-                allPositives += 1;
-                if (predictedLabel == samples[i].isPositiveUserData()) {
-                    truePositives += 1;
-                }                
-            }  
-        }
-        
-        if (allPositives == 0) {
-            return 1.0;
-        }
-
-        double precision = (float) truePositives / allPositives;
-        return precision;
+        return evaluate(neuralNetwork, samples).getPrecision();
     }
  
     /**
@@ -115,26 +110,7 @@ public class Evaluation {
      * @return recall
      */
     public static double computeRecall(NeuralNetwork neuralNetwork, Sample[] samples) {
-        int truePositives = 0;
-        int allTrue = 0;
-        for (int i = 0; i < samples.length; i++) {
-            boolean trueLabel = samples[i].isPositiveUserData();
-            if (trueLabel) {
-                allTrue += 1;
-                double output = neuralNetwork.computeOutput(Matrix.columnVector(samples[i].getEntries()));
-                boolean predictedLabel = output >= 0;
-                if (predictedLabel) {
-                    truePositives += 1;
-                }                
-            }
-        }
-        
-        if (allTrue == 0) {
-            return 1.0;
-        }
-
-        double precision = (float) truePositives / allTrue;
-        return precision;
+        return evaluate(neuralNetwork, samples).getRecall();
     }    
      
     /**
@@ -147,15 +123,7 @@ public class Evaluation {
      * @return F1 score
      */
     public static double computeF1(NeuralNetwork neuralNetwork, Sample[] samples) {
-        double precision = computePrecision(neuralNetwork, samples);
-        double recall = computeRecall(neuralNetwork, samples);
-        
-        if (precision + recall == 0) {
-            return 0.0;
-        }
-        
-        double f1 = 2 * precision * recall / (precision + recall);
-        return f1;
+        return evaluate(neuralNetwork, samples).getF1();
     }
 
 }
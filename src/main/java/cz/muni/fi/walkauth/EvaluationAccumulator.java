@@ -0,0 +1,73 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Sample;
+
+/**
+ * Confusion matrix and squared errors collected from outputs of a neural
+ * network. Accumulators of parts of a data set can be merged, which gives the
+ * report of the whole set.
+ */
+final class EvaluationAccumulator {
+
+    private int truePositives;
+    private int falsePositives;
+    private int trueNegatives;
+    private int falseNegatives;
+
+    private final MathUtils.SquareErrorAccumulator squares = new MathUtils.SquareErrorAccumulator();
+
+    /**
+     * Adds output of the network for one sample.
+     *
+     * @param output value of the output neuron
+     * @param sample evaluated sample
+     */
+    void add(double output, Sample sample) {
+        add(output, sample.isPositiveUserData());
+    }
+
+    /**
+     * Adds output of the network for one sample.
+     *
+     * @param output value of the output neuron
+     * @param isPositiveUserData label of the evaluated sample
+     */
+    void add(double output, boolean isPositiveUserData) {
+        squares.add(output, ActivationUtils.labelValue(isPositiveUserData));
+
+        boolean predictedLabel = output >= 0;
+        if (isPositiveUserData) {
+            if (predictedLabel) {
+                truePositives++;
+            } else {
+                falseNegatives++;
+            }
+        } else {
+            if (predictedLabel) {
+                falsePositives++;
+            } else {
+                trueNegatives++;
+            }
+        }
+    }
+
+    /**
+     * Adds counts and errors of another accumulator to this one.
+     *
+     * @param other accumulator to merge, it is not changed
+     */
+    void merge(EvaluationAccumulator other) {
+        truePositives += other.truePositives;
+        falsePositives += other.falsePositives;
+        trueNegatives += other.trueNegatives;
+        falseNegatives += other.falseNegatives;
+        squares.merge(other.squares);
+    }
+
+    /**
+     * @return report of all added samples
+     */
+    EvaluationReport toReport() {
+        return new EvaluationReport(truePositives, falsePositives, trueNegatives, falseNegatives, squares.getSumOfSquares());
+    }
+}
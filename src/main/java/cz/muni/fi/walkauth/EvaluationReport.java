@@ -0,0 +1,149 @@
+package cz.muni.fi.walkauth;
+
+/**
+ * Results of evaluation of a neural network on a set of samples: confusion
+ * matrix and sum of squared errors, from which all the metrics are derived.
+ *
+ * The metrics are computed the same way as by the separate methods of
+ * Evaluation, including their values for no samples.
+ */
+public final class EvaluationReport {
+
+    private final int truePositives;
+    private final int falsePositives;
+    private final int trueNegatives;
+    private final int falseNegatives;
+
+    // sum of squared differences between output and label
+    private final double squares;
+
+    /**
+     * @param truePositives positive samples classified as positive
+     * @param falsePositives negative samples classified as positive
+     * @param trueNegatives negative samples classified as negative
+     * @param falseNegatives positive samples classified as negative
+     * @param squares sum of squared differences between output and label
+     */
+    EvaluationReport(int truePositives, int falsePositives, int trueNegatives, int falseNegatives, double squares) {
+        this.truePositives = truePositives;
+        this.falsePositives = falsePositives;
+        this.trueNegatives = trueNegatives;
+        this.falseNegatives = falseNegatives;
+        this.squares = squares;
+    }
+
+    public int getTruePositives() {
+        return truePositives;
+    }
+
+    public int getFalsePositives() {
+        return falsePositives;
+    }
+
+    public int getTrueNegatives() {
+        return trueNegatives;
+    }
+
+    public int getFalseNegatives() {
+        return falseNegatives;
+    }
+
+    /**
+     * @return number of evaluated samples
+     */
+    public int getSampleCount() {
+        return truePositives + falsePositives + trueNegatives + falseNegatives;
+    }
+
+    /**
+     * Returns confusion matrix with actual labels in rows and predicted labels
+     * in columns, positive first: {{TP, FN}, {FP, TN}}.
+     *
+     * @return new 2x2 array
+     */
+    public int[][] getConfusionMatrix() {
+        return new int[][]{
+            {truePositives, falseNegatives},
+            {falsePositives, trueNegatives}
+        };
+    }
+
+    /**
+     * @return sum of squared differences between output and label
+     */
+    public double getSumOfSquares() {
+        return squares;
+    }
+
+    /**
+     * @return square error, 0.5 * sum of squares
+     */
+    public double getError() {
+        return 0.5 * squares;
+    }
+
+    /**
+     * @return root mean square error, 0 for no samples
+     */
+    public double getRMSE() {
+        int n = getSampleCount();
+        if (n == 0) {
+            return 0.0;
+        }
+        return Math.sqrt((float) squares / n);
+    }
+
+    /**
+     * @return ratio of correctly classified samples, 0 for no samples
+     */
+    public double getAccuracy() {
+        int n = getSampleCount();
+        if (n == 0) {
+            return 0.0;
+        }
+        return (float) (truePositives + trueNegatives) / n;
+    }
+
+    /**
+     * @return true positives / all classified as positive, 1 if no sample is
+     * classified as positive
+     */
+    public double getPrecision() {
+        int allPositives = truePositives + falsePositives;
+        if (allPositives == 0) {
+            return 1.0;
+        }
+        return (float) truePositives / allPositives;
+    }
+
+    /**
+     * @return true positives / all positive samples, 1 if there is no positive
+     * sample
+     */
+    public double getRecall() {
+        int allTrue = truePositives + falseNegatives;
+        if (allTrue == 0) {
+            return 1.0;
+        }
+        return (float) truePositives / allTrue;
+    }
+
+    /**
+     * @return harmonic mean of precision and recall, 0 if both are 0
+     */
+    public double getF1() {
+        double precision = getPrecision();
+        double recall = getRecall();
+        if (precision + recall == 0) {
+            return 0.0;
+        }
+        return 2 * precision * recall / (precision + recall);
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationReport{" + "TP=" + truePositives + ", FP=" + falsePositives
+                + ", TN=" + trueNegatives + ", FN=" + falseNegatives
+                + ", error=" + getError() + '}';
+    }
+}
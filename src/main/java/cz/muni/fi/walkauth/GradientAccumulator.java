@@ -0,0 +1,166 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import java.util.Arrays;
+
+/**
+ * Reusable buffers for backpropagation: gradient accumulated over samples,
+ * vectors of partial derivatives of error wrt. inner potentials (deltas) and
+ * context for values of neurons.
+ *
+ * Once created, adding a sample doesn't allocate any memory. The gradient of
+ * one sample is the outer product of delta vector of the upper layer and
+ * values of the lower layer, which is added directly to the accumulated
+ * gradient (rank-1 update).
+ */
+final class GradientAccumulator {
+
+    // accumulated gradient, one matrix for each matrix of weights
+    private final Matrix[] gradient;
+
+    // partial derivatives of error wrt. inner potentials of neurons of each
+    // layer except the input one (index 0 is unused)
+    private final double[][] deltas;
+
+    // values of neurons of the last computed sample
+    private final InferenceContext context;
+
+    /**
+     * Creates accumulator for networks with the same topology as the given
+     * one. The gradient is initialized to zero.
+     *
+     * @param neuralNetwork network defining the topology
+     */
+    GradientAccumulator(NeuralNetwork neuralNetwork) {
+        Matrix[] weights = neuralNetwork.getWeights();
+        this.gradient = new Matrix[weights.length];
+        this.deltas = new double[weights.length + 1][];
+        for (int l = 0; l < weights.length; l++) {
+            gradient[l] = Matrix.zeros(weights[l].getRowCount(), weights[l].getColCount());
+            deltas[l + 1] = new double[weights[l].getRowCount()];
+        }
+        this.context = neuralNetwork.createInferenceContext();
+    }
+
+    /**
+     * Sets the accumulated gradient to zero.
+     */
+    void reset() {
+        for (Matrix layer : gradient) {
+            Arrays.fill(layer.getData(), 0.0);
+        }
+    }
+
+    /**
+     * Adds gradient accumulated by another accumulator to this one.
+     *
+     * @param other accumulator for the same topology
+     */
+    void add(GradientAccumulator other) {
+        for (int l = 0; l < gradient.length; l++) {
+            gradient[l].addInPlace(other.gradient[l]);
+        }
+    }
+
+    /**
+     * @return accumulated gradient (no copy)
+     */
+    Matrix[] getGradient() {
+        return gradient;
+    }
+
+    /**
+     * Adds gradient of the given samples to the accumulated gradient.
+     *
+     * @param neuralNetwork network with the same topology as the accumulator
+     * @param data samples
+     * @param from index of the first sample
+     * @param to index after the last sample
+     */
+    void accumulate(NeuralNetwork neuralNetwork, Dataset data, int from, int to) {
+        Matrix[] weights = neuralNetwork.getWeights();
+        double[] values = data.getValues();
+        for (int s = from; s < to; s++) {
+            neuralNetwork.forward(values, data.getOffset(s), context);
+            backward(weights, ActivationUtils.labelValue(data.isPositiveUserData(s)));
+        }
+    }
+
+    /**
+     * Adds gradient of the samples selected by a range of indices to the
+     * accumulated gradient.
+     *
+     * @param neuralNetwork network with the same topology as the accumulator
+     * @param data samples
+     * @param order indices of samples
+     * @param from position of index of the first sample in order
+     * @param to position after index of the last sample in order
+     */
+    void accumulate(NeuralNetwork neuralNetwork, Dataset data, int[] order, int from, int to) {
+        Matrix[] weights = neuralNetwork.getWeights();
+        double[] values = data.getValues();
+        for (int i = from; i < to; i++) {
+            int s = order[i];
+            neuralNetwork.forward(values, data.getOffset(s), context);
+            backward(weights, ActivationUtils.labelValue(data.isPositiveUserData(s)));
+        }
+    }
+
+    /**
+     * Propagates error of the last computed sample back through the network
+     * and adds its gradient to the accumulated one.
+     *
+     * @param weights weights of the network
+     * @param expectedOutput expected value of the output neuron
+     */
+    private void backward(Matrix[] weights, double expectedOutput) {
+        int layersCount = weights.length;
+
+        // output layer: derivative of error wrt. value times derivative of
+        // activation function
+        double output = context.getOutput();
+        deltas[layersCount][0] = (output - expectedOutput)
+                * ActivationUtils.activationFunctionDerivative(output);
+
+        // go from back to front, but omit the input layer
+        for (int l = layersCount - 1; l > 0; l--) {
+            double[] delta = deltas[l];
+            double[] upperDelta = deltas[l + 1];
+            double[] w = weights[l].getData();
+            int cols = weights[l].getColCount();
+
+            // derivatives wrt. values of neurons are W^T * upperDelta without
+            // the bias column, summed row by row over contiguous memory
+            Arrays.fill(delta, 0.0);
+            for (int r = 0; r < upperDelta.length; r++) {
+                double d = upperDelta[r];
+                int row = r * cols + 1;
+                for (int j = 0; j < delta.length; j++) {
+                    delta[j] += d * w[row + j];
+                }
+            }
+
+            // derivative of activation function is computed once per neuron
+            double[] values = context.getActivations(l);
+            for (int j = 0; j < delta.length; j++) {
+                delta[j] *= ActivationUtils.activationFunctionDerivative(values[j + 1]);
+            }
+        }
+
+        // gradient is outer product of deltas and values of lower layer
+        // (including bias), added to the accumulated gradient
+        for (int l = 0; l < layersCount; l++) {
+            double[] delta = deltas[l + 1];
+            double[] values = context.getActivations(l);
+            double[] g = gradient[l].getData();
+            int cols = values.length;
+            for (int r = 0; r < delta.length; r++) {
+                double d = delta[r];
+                int row = r * cols;
+                for (int c = 0; c < cols; c++) {
+                    g[row + c] += d * values[c];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package cz.muni.fi.walkauth;
+
+/**
+ * Values of neurons computed by one forward pass of a neural network.
+ *
+ * The context holds one preallocated buffer for each layer with bias (constant
+ * 1) at index 0, so the forward pass doesn't allocate any memory. The network
+ * itself keeps only weights, hence one network can be used by several threads
+ * at once as long as each of them uses its own context.
+ */
+public final class InferenceContext {
+
+    // values of neurons, one buffer for each layer with bias at index 0
+    private final double[][] activations;
+
+    // column vector views of the activation buffers
+    private final Matrix[] neuronValues;
+
+    /**
+     * Creates context for a network with the given layer sizes.
+     *
+     * @param layers number of neurons in each layer, including the input one
+     */
+    InferenceContext(int[] layers) {
+        this.activations = new double[layers.length][];
+        this.neuronValues = new Matrix[layers.length];
+        for (int l = 0; l < layers.length; l++) {
+            activations[l] = new double[layers[l] + 1];
+            activations[l][0] = 1;
+            neuronValues[l] = Matrix.columnVector(activations[l]);
+        }
+    }
+
+    /**
+     * Checks whether the context can be used with the given weights.
+     *
+     * @param weights weights of a neural network
+     * @return true if the buffers match the topology given by the weights
+     */
+    boolean fits(Matrix[] weights) {
+        if (activations.length != weights.length + 1) {
+            return false;
+        }
+        for (int l = 0; l < weights.length; l++) {
+            if (activations[l].length != weights[l].getColCount()) {
+                return false;
+            }
+        }
+        return activations[weights.length].length == weights[weights.length - 1].getRowCount() + 1;
+    }
+
+    /**
+     * Returns buffer of the given layer (no copy).
+     *
+     * @param layer layer order number (input layer is 0)
+     * @return values of neurons with bias at index 0
+     */
+    double[] getActivations(int layer) {
+        return activations[layer];
+    }
+
+    /**
+     * Get one layer of neuron values. The returned vector is a view of the
+     * context's buffer, so it changes with the next computation.
+     *
+     * @param layer layer order number (input layer is 0)
+     * @return column vector of values of neurons in this layer (with bias as
+     * the first element)
+     */
+    public Matrix getNeuronValuesInLayer(int layer) {
+        return neuronValues[layer];
+    }
+
+    /**
+     * @param layer layer order number (input layer is 0)
+     * @param row position in layer, bias is at 0
+     * @return value of the neuron
+     */
+    public double getNeuronValue(int layer, int row) {
+        return activations[layer][row];
+    }
+
+    /**
+     * @return value of the first output neuron
+     */
+    public double getOutput() {
+        return activations[activations.length - 1][1];
+    }
+}
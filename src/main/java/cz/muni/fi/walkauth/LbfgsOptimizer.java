@@ -0,0 +1,223 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Limited-memory BFGS. The direction of each step is the gradient multiplied
+ * by an approximation of the inverse Hessian, which is built from the last few
+ * changes of weights and gradient (two-loop recursion). The length of the
+ * step is found by backtracking line search, which evaluates the error until
+ * it decreases enough (Armijo condition), so the learning speed is not used.
+ *
+ * Each step needs one gradient and at least two errors of the whole training
+ * data. If the search fails in the computed direction, the history is
+ * forgotten and the search is repeated in the direction of the gradient. If
+ * that fails too, the weights are left unchanged.
+ */
+public final class LbfgsOptimizer implements Optimizer {
+
+    public static final int DEFAULT_HISTORY = 10;
+
+    // required decrease of error relative to the linear prediction
+    private static final double ARMIJO = 1e-4;
+
+    private static final double BACKTRACKING = 0.5;
+
+    private static final int MAX_LINE_SEARCH = 30;
+
+    private final int history;
+
+    // changes of weights and gradient, a ring buffer of history pairs
+    private Matrix[][] weightChanges;
+    private Matrix[][] gradientChanges;
+    private double[] rho;
+    private double[] alpha;
+    private int count;
+    private int newest;
+
+    // change of weights and gradient of the last step, stored into the
+    // history (by swapping with the slot) only if it's accepted
+    private Matrix[] weightChange;
+    private Matrix[] gradientChange;
+
+    // weights and gradient of the previous step
+    private Matrix[] previousWeights;
+    private Matrix[] previousGradient;
+    private boolean hasPrevious;
+
+    private Matrix[] direction;
+
+    /**
+     * Creates L-BFGS remembering the default number of steps.
+     */
+    public LbfgsOptimizer() {
+        this(DEFAULT_HISTORY);
+    }
+
+    /**
+     * @param history number of remembered steps
+     */
+    public LbfgsOptimizer(int history) {
+        if (history < 1) {
+            throw new IllegalArgumentException("History must be positive, but it is " + history + ".");
+        }
+        this.history = history;
+    }
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        weightChanges = new Matrix[history][];
+        gradientChanges = new Matrix[history][];
+        for (int k = 0; k < history; k++) {
+            weightChanges[k] = Optimizer.zerosLike(weights);
+            gradientChanges[k] = Optimizer.zerosLike(weights);
+        }
+        rho = new double[history];
+        alpha = new double[history];
+        count = 0;
+        newest = -1;
+        weightChange = Optimizer.zerosLike(weights);
+        gradientChange = Optimizer.zerosLike(weights);
+        previousWeights = Optimizer.zerosLike(weights);
+        previousGradient = Optimizer.zerosLike(weights);
+        hasPrevious = false;
+        direction = Optimizer.zerosLike(weights);
+    }
+
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        if (hasPrevious) {
+            remember(weights, gradient);
+        }
+        copy(weights, previousWeights);
+        copy(gradient, previousGradient);
+        hasPrevious = true;
+
+        double gradientNorm = Math.sqrt(dot(gradient, gradient));
+        if (gradientNorm == 0) {
+            return;
+        }
+
+        double initialError = error.getAsDouble();
+        if (count > 0) {
+            double slope = computeDirection(gradient);
+            if (slope < 0 && lineSearch(weights, initialError, slope, error)) {
+                return;
+            }
+            count = 0;
+        }
+
+        // steepest descent with unit step, as the normalized gradient descent
+        copy(gradient, direction);
+        for (Matrix d : direction) {
+            d.scaleInPlace(-1 / gradientNorm);
+        }
+        if (!lineSearch(weights, initialError, -gradientNorm, error)) {
+            copy(previousWeights, weights);
+        }
+    }
+
+    @Override
+    public boolean isFullBatch() {
+        return true;
+    }
+
+    /**
+     * Stores change of weights and gradient since the previous step, unless
+     * it would break positive definiteness of the approximation. A rejected
+     * change leaves the history intact, including the oldest pair.
+     */
+    private void remember(Matrix[] weights, Matrix[] gradient) {
+        Matrix[] s = weightChange;
+        Matrix[] y = gradientChange;
+        for (int l = 0; l < s.length; l++) {
+            s[l].copyFrom(weights[l]).addScaled(previousWeights[l], -1);
+            y[l].copyFrom(gradient[l]).addScaled(previousGradient[l], -1);
+        }
+        double sy = dot(s, y);
+        if (sy > 1e-10) {
+            int slot = (newest + 1) % history;
+            // the replaced pair becomes the buffer for the next change
+            weightChange = weightChanges[slot];
+            gradientChange = gradientChanges[slot];
+            weightChanges[slot] = s;
+            gradientChanges[slot] = y;
+            rho[slot] = 1 / sy;
+            newest = slot;
+            count = Math.min(count + 1, history);
+        }
+    }
+
+    /**
+     * Computes direction of the step by the two-loop recursion.
+     *
+     * @return directional derivative of error in the direction
+     */
+    private double computeDirection(Matrix[] gradient) {
+        copy(gradient, direction);
+        for (int k = 0, slot = newest; k < count; k++, slot = (slot - 1 + history) % history) {
+            alpha[slot] = rho[slot] * dot(weightChanges[slot], direction);
+            addScaled(direction, gradientChanges[slot], -alpha[slot]);
+        }
+
+        // initial approximation of the inverse Hessian is gamma * I
+        Matrix[] y = gradientChanges[newest];
+        double gamma = 1 / (rho[newest] * dot(y, y));
+        for (Matrix d : direction) {
+            d.scaleInPlace(gamma);
+        }
+
+        for (int k = 0, slot = (newest - count + 1 + history) % history; k < count; k++, slot = (slot + 1) % history) {
+            double beta = rho[slot] * dot(gradientChanges[slot], direction);
+            addScaled(direction, weightChanges[slot], alpha[slot] - beta);
+        }
+        for (Matrix d : direction) {
+            d.scaleInPlace(-1);
+        }
+        return dot(gradient, direction);
+    }
+
+    /**
+     * Moves weights from the previous ones along the direction, halving the
+     * step until the error decreases enough.
+     *
+     * @return true if the weights were moved
+     */
+    private boolean lineSearch(Matrix[] weights, double initialError, double slope, DoubleSupplier error) {
+        double step = 1;
+        for (int i = 0; i < MAX_LINE_SEARCH; i++) {
+            for (int l = 0; l < weights.length; l++) {
+                weights[l].copyFrom(previousWeights[l]).addScaled(direction[l], step);
+            }
+            if (error.getAsDouble() <= initialError + ARMIJO * step * slope) {
+                return true;
+            }
+            step *= BACKTRACKING;
+        }
+        return false;
+    }
+
+    private static double dot(Matrix[] a, Matrix[] b) {
+        double sum = 0;
+        for (int l = 0; l < a.length; l++) {
+            double[] x = a[l].getData();
+            double[] y = b[l].getData();
+            for (int i = 0; i < x.length; i++) {
+                sum += x[i] * y[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void addScaled(Matrix[] target, Matrix[] other, double scalar) {
+        for (int l = 0; l < target.length; l++) {
+            target[l].addScaled(other[l], scalar);
+        }
+    }
+
+    private static void copy(Matrix[] source, Matrix[] target) {
+        for (int l = 0; l < source.length; l++) {
+            target[l].copyFrom(source[l]);
+        }
+    }
+}
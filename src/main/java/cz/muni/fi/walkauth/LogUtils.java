@@ -59,6 +59,32 @@ public class LogUtils {
         LEARNING_LOGGER.info(sj.toString());
     }
 
+    /**
+     * Prints learning progress of one iteration into log file, in the order
+     * given by the header.
+     *
+     * @param iteration number of the iteration
+     * @param validation evaluation on validation data
+     * @param training evaluation on training data
+     */
+    public static void logLearning(int iteration, EvaluationReport validation, EvaluationReport training) {
+        logLearning(new double[]{
+            iteration,
+            validation.getError(),
+            validation.getRMSE(),
+            validation.getAccuracy(),
+            validation.getPrecision(),
+            validation.getRecall(),
+            validation.getF1(),
+            training.getError(),
+            training.getRMSE(),
+            training.getAccuracy(),
+            training.getPrecision(),
+            training.getRecall(),
+            training.getF1()
+        });
+    }
+
     /**
      * Prints header of a csv file with weights
      *
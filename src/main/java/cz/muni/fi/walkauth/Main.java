@@ -4,6 +4,8 @@ import cz.muni.fi.walkauth.preprocessing.DataManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -48,10 +50,20 @@ public class Main {
         // properties
         Properties prop = setCommandlineProperties(cmd, setProperties());
 
+        // threads for multiplication of large matrices
+        Matrix.setParallelism(Integer.parseInt(prop.getProperty("matrixThreads")));
+
+        // one generator for the whole run, each part gets its own split of it
+        String seed = prop.getProperty("seed", "").trim();
+        SplittableRandom random = createRandom(seed);
+
         // prepare data
-        DataManager dataManager = new DataManager();
+        DataManager dataManager = new DataManager(random.split());
+        dataManager.setCheckDuplicates(Boolean.parseBoolean(prop.getProperty("checkDuplicates")));
+        dataManager.getNormalization().setPerAxis(Boolean.parseBoolean(prop.getProperty("normalizePerAxis")));
         dataManager.prepareData(
                 Integer.parseInt(prop.getProperty("entriesPerSample")),
+                Integer.parseInt(prop.getProperty("windowStride")),
                 prop.getProperty("dataPath"),
                 prop.getProperty("positiveUser"),
                 Float.parseFloat(prop.getProperty("positiveDataRatio")),
@@ -62,40 +74,47 @@ public class Main {
         System.out.println(dataManager.dataOverview());
 
         // build topology
-        int[] topology = buildTopology(dataManager.getTrainingData()[0].getEntries().length,
+        int[] topology = buildTopology(dataManager.getTrainingData().getSampleLength(),
                 stringToIntArray(prop.getProperty("hiddenNeuronsTopology")), 1);
 
+        // training settings
+        TrainingOptions options = new TrainingOptions();
+        options.setThreads(Integer.parseInt(prop.getProperty("trainingThreads")));
+        options.setBatchSize(Integer.parseInt(prop.getProperty("batchSize")));
+        Optimizer optimizer = createOptimizer(prop.getProperty("optimizer"));
+        options.setOptimizer(optimizer);
+        options.setEvaluationInterval(Integer.parseInt(prop.getProperty("evaluationInterval")));
+        options.setPatience(Integer.parseInt(prop.getProperty("patience")));
+        options.setRandom(random.split());
+        options.setReproducible(!seed.isEmpty());
+
         // train
         NeuralNetwork network = NeuralNetworkLearning.trainNeuralNetwork(
                 topology,
                 dataManager.getTrainingData(),
                 dataManager.getValidationData(),
                 Float.parseFloat(prop.getProperty("acceptableError")),
-                (Integer iteration, Double error) -> {
-                    double speed = Double.parseDouble(prop.getProperty("learningSpeed"));
-                    return speed * error / ((iteration + 8)/8.0); 
-                },
-                Integer.parseInt(prop.getProperty("maxIterations"))
+                createLearningSpeed(optimizer, prop),
+                Integer.parseInt(prop.getProperty("maxIterations")),
+                options
         );
 
         // evaluate
-        double error = Evaluation.computeError(network, dataManager.getTestingData());
-        double rmse = Evaluation.computeRMSE(network, dataManager.getTestingData());
-        double accuracy = Evaluation.computeAccuracy(network, dataManager.getTestingData());
-        double precision = Evaluation.computePrecision(network, dataManager.getTestingData());
-        double recall = Evaluation.computeRecall(network, dataManager.getTestingData());
-        double f1 = Evaluation.computeF1(network, dataManager.getTestingData());
+        EvaluationReport report;
+        try (ParallelEvaluation evaluation = new ParallelEvaluation(options.getThreads())) {
+            report = evaluation.evaluate(network, dataManager.getTestingData());
+        }
 
-        System.out.println("Error: " + error);
-        System.out.println("RMSE: " + rmse);
-        System.out.println("Accuracy: " + accuracy);
-        System.out.println("Precision: " + precision);
-        System.out.println("Recall: " + recall);
-        System.out.println("F1: " + f1);
+        System.out.println("Error: " + report.getError());
+        System.out.println("RMSE: " + report.getRMSE());
+        System.out.println("Accuracy: " + report.getAccuracy());
+        System.out.println("Precision: " + report.getPrecision());
+        System.out.println("Recall: " + report.getRecall());
+        System.out.println("F1: " + report.getF1());
 
     }
 
-    private static Properties setProperties() throws IOException {
+    static Properties setProperties() throws IOException {
         InputStream input = Main.class.getResourceAsStream(PROPERTIES_FILENAME);
         Properties prop = new Properties();
         prop.load(input);
@@ -116,6 +135,68 @@ public class Main {
         return array;
     }
 
+    static Optimizer createOptimizer(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "normalized":
+                return new NormalizedGradientDescent();
+            case "momentum":
+                return new MomentumOptimizer();
+            case "nesterov":
+                return new MomentumOptimizer(MomentumOptimizer.DEFAULT_MOMENTUM, true);
+            case "rmsprop":
+                return new RMSPropOptimizer();
+            case "adam":
+                return new AdamOptimizer();
+            case "rprop":
+                return new RpropOptimizer();
+            case "lbfgs":
+                return new LbfgsOptimizer();
+            default:
+                throw new IllegalArgumentException("Unknown optimizer " + name + ".");
+        }
+    }
+
+    /**
+     * Creates learning speed of each iteration for the optimizer. Normalized
+     * gradient descent makes steps proportional to the training error, from
+     * the base learningSpeed. Other optimizers get the mean gradient, so they
+     * start from learningRate (or their own default) and it decays to half
+     * after learningRateDecay iterations, to third after twice as many and so
+     * on; 0 keeps it constant.
+     *
+     * @param optimizer optimizer of the training
+     * @param prop properties with the learning speed settings
+     * @return function of iteration and training error
+     */
+    static BiFunction<Integer, Double, Double> createLearningSpeed(Optimizer optimizer, Properties prop) {
+        if (optimizer instanceof NormalizedGradientDescent) {
+            double speed = Double.parseDouble(prop.getProperty("learningSpeed"));
+            return (Integer iteration, Double error) -> speed * error / ((iteration + 8) / 8.0);
+        }
+
+        String rate = prop.getProperty("learningRate", "").trim();
+        double learningRate = rate.isEmpty() ? optimizer.getDefaultLearningRate() : Double.parseDouble(rate);
+        int decay = Integer.parseInt(prop.getProperty("learningRateDecay", "0").trim());
+        if (decay < 0) {
+            throw new IllegalArgumentException("Decay of learning rate cannot be negative, but it is " + decay + ".");
+        }
+        if (decay == 0) {
+            return (Integer iteration, Double error) -> learningRate;
+        }
+        return (Integer iteration, Double error) -> learningRate / (1 + (iteration - 1) / (double) decay);
+    }
+
+    private static SplittableRandom createRandom(String seed) {
+        if (seed.isEmpty()) {
+            return new SplittableRandom();
+        }
+        try {
+            return new SplittableRandom(Long.parseLong(seed));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Seed " + seed + " is not a number.", ex);
+        }
+    }
+
     private static int[] buildTopology(int inputs, int[] hiddenLayers, int outputs) {
         int[] layers = new int[hiddenLayers.length + 2];
         layers[0] = inputs;
@@ -142,6 +223,14 @@ public class Main {
                 .required(false)
                 .build()
         );
+        cmdOptions.addOption(Option.builder("l")
+                .longOpt("window-stride")
+                .argName("N")
+                .hasArg()
+                .desc("Number of entries between starts of consecutive samples of one recording; lower than the number of entries per sample gives overlapping samples.")
+                .required(false)
+                .build()
+        );
         cmdOptions.addOption(Option.builder("u")
                 .longOpt("positive-user")
                 .argName("FILE")
@@ -194,7 +283,7 @@ public class Main {
                 .longOpt("learning-speed")
                 .argName("SPEED")
                 .hasArg()
-                .desc("The values that is used as base value in computing learning speed.")
+                .desc("The values that is used as base value in computing learning speed of the normalized optimizer. Its steps are proportional to the training error.")
                 .required(false)
                 .build()
         );
@@ -206,6 +295,78 @@ public class Main {
                 .required(false)
                 .build()
         );
+        cmdOptions.addOption(Option.builder("m")
+                .longOpt("matrix-threads")
+                .argName("N")
+                .hasArg()
+                .desc("Number of threads used for multiplication of large matrices, e.g. forward pass of a sample through a layer of 512 neurons over 1500 inputs; backpropagation of a sample stays on one thread. Value 1 disables parallel multiplication.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("p")
+                .longOpt("training-threads")
+                .argName("N")
+                .hasArg()
+                .desc("Number of threads computing the gradient. Training data are split into this many parts, one for each thread.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("b")
+                .longOpt("batch-size")
+                .argName("N")
+                .hasArg()
+                .desc("Number of samples in one mini-batch of stochastic gradient descent. Training data are shuffled every iteration and weights are updated after each mini-batch. Value 0 computes every step from all training data.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("o")
+                .longOpt("optimizer")
+                .argName("NAME")
+                .hasArg()
+                .desc("Rule for updating weights from the gradient: normalized (gradient descent with unit gradient), momentum, nesterov, rmsprop, adam, rprop (iRPROP-) or lbfgs (L-BFGS). Normalized uses the learning speed, momentum, nesterov, rmsprop and adam use the learning rate with the mean gradient of a step, rprop and lbfgs choose the step themselves and need full-batch training.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("L")
+                .longOpt("learning-rate")
+                .argName("RATE")
+                .hasArg()
+                .desc("Initial learning rate of the momentum, nesterov, rmsprop and adam optimizers. Without it the default of the optimizer is used (0.01 for momentum and nesterov, 0.001 for rmsprop and adam).")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("D")
+                .longOpt("learning-rate-decay")
+                .argName("N")
+                .hasArg()
+                .desc("Number of iterations after which the learning rate drops to half, after twice as many to third and so on. Value 0 keeps the learning rate constant.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("f")
+                .longOpt("evaluation-interval")
+                .argName("N")
+                .hasArg()
+                .desc("Number of iterations between evaluations of the learning progress on validation and training data.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("w")
+                .longOpt("patience")
+                .argName("N")
+                .hasArg()
+                .desc("Stops learning when validation error has not improved for this many iterations. Value 0 disables early stopping. The weights with the lowest validation error are used in any case.")
+                .required(false)
+                .build()
+        );
+        cmdOptions.addOption(Option.builder("S")
+                .longOpt("seed")
+                .argName("N")
+                .hasArg()
+                .desc("Seed of the random split of data, initial weights and order of mini-batches. Runs with the same seed and settings give the same results; the training then waits for every evaluation of its progress. Without it every run is different.")
+                .required(false)
+                .build()
+        );
         cmdOptions.addOption(Option.builder("h")
                 .longOpt("help")
                 .desc("Prints this help message.")
@@ -261,6 +422,8 @@ public class Main {
         switch (optName) {
             case "e":
                 return "entriesPerSample";
+            case "l":
+                return "windowStride";
             case "d":
                 return "dataPath";
             case "u":
@@ -279,6 +442,24 @@ public class Main {
                 return "learningSpeed";
             case "i":
                 return "maxIterations";
+            case "m":
+                return "matrixThreads";
+            case "p":
+                return "trainingThreads";
+            case "b":
+                return "batchSize";
+            case "o":
+                return "optimizer";
+            case "f":
+                return "evaluationInterval";
+            case "w":
+                return "patience";
+            case "S":
+                return "seed";
+            case "L":
+                return "learningRate";
+            case "D":
+                return "learningRateDecay";
             default:
                 return null;
         }
@@ -61,4 +61,87 @@ public final class MathUtils {
         return error;
     }
 
+    /**
+     * Mergeable counterpart of squareError and rmse: sum of squared
+     * differences which can be computed in parts (e.g. by several threads) and
+     * then merged.
+     *
+     * The sum is compensated (Neumaier), so the rounding error doesn't grow
+     * with number of values and the result hardly depends on how the values
+     * were split into parts.
+     */
+    public static final class SquareErrorAccumulator {
+
+        private double sum;
+
+        // lost low-order bits of the sum
+        private double compensation;
+
+        private int count;
+
+        /**
+         * Adds squared difference of one pair of values.
+         *
+         * @param predictedValue predicted value
+         * @param actualValue actual value
+         */
+        public void add(double predictedValue, double actualValue) {
+            double diff = predictedValue - actualValue;
+            addToSum(diff * diff);
+            count++;
+        }
+
+        /**
+         * Adds values of another accumulator to this one.
+         *
+         * @param other accumulator to merge, it is not changed
+         */
+        public void merge(SquareErrorAccumulator other) {
+            addToSum(other.sum);
+            compensation += other.compensation;
+            count += other.count;
+        }
+
+        private void addToSum(double value) {
+            double t = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - t) + value;
+            } else {
+                compensation += (value - t) + sum;
+            }
+            sum = t;
+        }
+
+        /**
+         * @return number of added pairs of values
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return sum_i((predicted[i] - actual[i])^2)
+         */
+        public double getSumOfSquares() {
+            return sum + compensation;
+        }
+
+        /**
+         * @return 0.5 * sum_i((predicted[i] - actual[i])^2), see squareError
+         */
+        public double squareError() {
+            return 0.5 * getSumOfSquares();
+        }
+
+        /**
+         * @return sqrt((sum_i((predicted[i] - actual[i])^2))/n), 0 for no
+         * values, see rmse
+         */
+        public double rmse() {
+            if (count == 0) {
+                return 0.0;
+            }
+            return Math.sqrt((float) getSumOfSquares() / count);
+        }
+    }
 }
@@ -4,35 +4,90 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents matrix of doubles and implements various matrix operations.
  *
- * Once the matrix is created, its dimension can't be changed. All math
- * operations create and return new matrix (and don't change the original
- * matrix). Nevertheless, the class is not immutable (contains a method to set
- * individual elements) to allow for applying functions to individual elements
- * cheaply.
+ * Once the matrix is created, its dimension can't be changed. Math operations
+ * create and return new matrix (and don't change the original matrix), unless
+ * they are explicitly in-place (addInPlace, scaleInPlace, addScaled, copyFrom)
+ * or write into a given destination (multiplyInto). The mutable operations
+ * allow hot loops such as training to run without allocating.
+ *
+ * Elements are stored in a single contiguous array in row-major order, i.e.
+ * element [i,j] lives at index i * stride + j where the row stride equals the
+ * number of columns. Loops over the backing array are therefore straight-line
+ * and cache friendly.
  */
 public final class Matrix {
 
+    // number of rows of the B panel (shared dimension) processed at once,
+    // 64 rows x BLOCK_COLS columns of doubles stay within L2 cache
+    private static final int BLOCK_DEPTH = 64;
+
+    // number of columns of the B panel and of the product processed at once,
+    // four product rows of this length stay within L1 cache
+    private static final int BLOCK_COLS = 256;
+
+    // number of rows of the product computed together by the micro-kernel
+    private static final int BLOCK_ROWS = 4;
+
+    // minimal number of multiply-adds of a product computed in parallel,
+    // smaller products do not pay off the cost of forking; the forward pass
+    // of one sample through a layer of 512 neurons over 1500 inputs (about
+    // 770k multiply-adds) is above it
+    private static final long PARALLEL_THRESHOLD = 1L << 18;
+
+    // pool used for parallel multiplication, null means sequential only
+    private static volatile ForkJoinPool pool = null;
+
     // number of rows
     private final int n;
 
     // number of columns
     private final int m;
 
-    // values of all elements
-    private final double[][] values;
+    // values of all elements, row after row
+    private final double[] values;
 
     /**
-     * Create a matrix with given values.
+     * Create a matrix with given values. The values are copied into the
+     * internal row-major storage.
      *
      * @param values 2D array of values
+     * @throws IllegalArgumentException if the rows do not have the same length
      */
     public Matrix(double[][] values) {
         this.n = values.length;
         this.m = (this.n == 0) ? 0 : values[0].length;
+        this.values = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            if (values[i].length != m) {
+                throw new IllegalArgumentException("All rows of a matrix must have"
+                        + " the same length. Row " + i + " has " + values[i].length
+                        + " element(s), but " + m + " expected.");
+            }
+            System.arraycopy(values[i], 0, this.values, i * m, m);
+        }
+    }
+
+    /**
+     * Create a matrix backed by the given row-major array. The array is not
+     * copied, so changes to it are visible in the matrix and vice versa.
+     *
+     * @param n number of rows
+     * @param m number of columns
+     * @param values row-major array of n * m values
+     */
+    Matrix(int n, int m, double[] values) {
+        if (values.length != n * m) {
+            throw new IllegalArgumentException("Backing array has " + values.length
+                    + " element(s), but " + n + "x" + m + " matrix needs " + (n * m) + ".");
+        }
+        this.n = n;
+        this.m = m;
         this.values = values;
     }
 
@@ -45,32 +100,50 @@ public final class Matrix {
     public Matrix(int n, int m) {
         this.n = n;
         this.m = m;
-        this.values = new double[n][m];
+        this.values = new double[n * m];
     }
 
+    /**
+     * Copy the values of the matrix into a 2D array.
+     *
+     * @return 2D array of values, changes to it do not affect the matrix
+     */
     public double[][] getValues() {
+        double[][] values2d = new double[n][];
+        for (int i = 0; i < n; i++) {
+            values2d[i] = Arrays.copyOfRange(values, i * m, (i + 1) * m);
+        }
+        return values2d;
+    }
+
+    /**
+     * Return the row-major backing array of the matrix (no copy).
+     *
+     * @return array with element [i,j] at index i * getColCount() + j
+     */
+    double[] getData() {
         return values;
     }
 	
     /**
-     * Static factory for a row vector.
+     * Static factory for a row vector. The vector is backed by the given array.
      *
      * @param values items of the vector
      * @return 1-m matrix representing a row vector with given values
      */
     public static Matrix rowVector(double[] values) {
-		double[][] values2d = {values};
-        return new Matrix(values2d);
+        return new Matrix(1, values.length, values);
     }
 	
 	/**
-     * Static factory for a column vector.
+     * Static factory for a column vector. The vector is backed by the given
+     * array, as row-major layout of n-1 matrix is the array itself.
      *
      * @param values items of the vector
      * @return n-1 matrix representing a column vector with given values
      */
     public static Matrix columnVector(double[] values) {
-        return Matrix.rowVector(values).transpose();
+        return new Matrix(values.length, 1, values);
     }
 
     /**
@@ -93,13 +166,7 @@ public final class Matrix {
      */
     public static Matrix constant(int n, int m, double value) {
         Matrix a = new Matrix(n, m);
-        
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < m; j++) {
-                a.set(i, j, value);
-            }
-        }
-        
+        Arrays.fill(a.values, value);
         return a;
     }
 
@@ -133,13 +200,11 @@ public final class Matrix {
      * @return n-m matrix filled with random numbers
      */
     public static Matrix random(int n, int m) {
-        double[][] values = new double[n][m];
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < m; j++) {
-                values[i][j] = (Math.random() - 0.5) / 0.5;
-            }
+        Matrix a = new Matrix(n, m);
+        for (int i = 0; i < a.values.length; i++) {
+            a.values[i] = (Math.random() - 0.5) / 0.5;
         }
-        return new Matrix(values);
+        return a;
     }
 
     /**
@@ -164,7 +229,7 @@ public final class Matrix {
      * @return number at given position
      */
     public double get(int row, int col) {
-        return values[row][col];
+        return values[row * m + col];
     }
 
     /**
@@ -175,7 +240,7 @@ public final class Matrix {
      * @param number number to set at given position
      */
     public void set(int row, int col, double number) {
-        values[row][col] = number;
+        values[row * m + col] = number;
     }
 
     /**
@@ -185,14 +250,76 @@ public final class Matrix {
      * @return new matrix with is the result of the addition
      */
     public Matrix add(Matrix other) {
-        double[][] newValues = new double[n][m];
-        
-        for(int i = 0; i < n; i++) {
-            for(int j = 0; j < m; j++) {
-                newValues[i][j] = values[i][j] + other.get(i, j);
-            }
+        checkSameDimensions(other);
+
+        double[] newValues = new double[values.length];
+        double[] otherValues = other.values;
+        for (int i = 0; i < newValues.length; i++) {
+            newValues[i] = values[i] + otherValues[i];
+        }
+        return new Matrix(n, m, newValues);
+    }
+
+    /**
+     * Add another matrix to this matrix in place.
+     *
+     * @param other the other matrix
+     * @return this matrix
+     */
+    public Matrix addInPlace(Matrix other) {
+        return addScaled(other, 1.0);
+    }
+
+    /**
+     * Add a multiple of another matrix to this matrix in place, i.e.
+     * this = this + scalar * other.
+     *
+     * @param other the other matrix
+     * @param scalar number with which the other matrix is multiplied
+     * @return this matrix
+     */
+    public Matrix addScaled(Matrix other, double scalar) {
+        checkSameDimensions(other);
+
+        double[] otherValues = other.values;
+        for (int i = 0; i < values.length; i++) {
+            values[i] += scalar * otherValues[i];
         }
-        return new Matrix(newValues);
+        return this;
+    }
+
+    /**
+     * Multiply this matrix by a scalar in place.
+     *
+     * @param scalar number with which to multiply the matrix
+     * @return this matrix
+     */
+    public Matrix scaleInPlace(double scalar) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= scalar;
+        }
+        return this;
+    }
+
+    /**
+     * Overwrite all elements of this matrix with elements of another matrix.
+     *
+     * @param other matrix of the same dimensions
+     * @return this matrix
+     */
+    public Matrix copyFrom(Matrix other) {
+        checkSameDimensions(other);
+        System.arraycopy(other.values, 0, values, 0, values.length);
+        return this;
+    }
+
+    /**
+     * Create a copy of this matrix.
+     *
+     * @return new matrix with the same elements
+     */
+    public Matrix copy() {
+        return new Matrix(n, m, values.clone());
     }
 
     /**
@@ -219,20 +346,347 @@ public final class Matrix {
                     + other.getRowCount());
         }
 
-        Matrix product = zeros(this.getRowCount(), other.getColCount());
+        Matrix product = new Matrix(n, other.m);
+        gemm(n, m, other.m, this.values, 0, other.values, 0, product.values, 0);
+        return product;
+    }
+
+    /**
+     * Multiply two matrices and store the result into the destination matrix,
+     * i.e. dest = a * b.
+     *
+     * @param a the left matrix
+     * @param b the right matrix
+     * @param dest matrix for the product, its previous content is overwritten
+     * @throws IllegalArgumentException if the dimensions do not match or dest
+     * shares storage with a or b
+     */
+    public static void multiplyInto(Matrix a, Matrix b, Matrix dest) {
+        multiplyInto(a, false, b, false, dest);
+    }
+
+    /**
+     * Multiply two optionally transposed matrices and store the result into
+     * the destination matrix, e.g. dest = a^T * b. The transposition is not
+     * materialized, the kernels read the operands in the transposed order.
+     *
+     * @param a the left matrix
+     * @param transposeA whether to use transposition of a
+     * @param b the right matrix
+     * @param transposeB whether to use transposition of b
+     * @param dest matrix for the product, its previous content is overwritten
+     * @throws IllegalArgumentException if the dimensions do not match or dest
+     * shares storage with a or b
+     */
+    public static void multiplyInto(Matrix a, boolean transposeA, Matrix b, boolean transposeB, Matrix dest) {
+        int n = transposeA ? a.m : a.n;
+        int k = transposeA ? a.n : a.m;
+        int kb = transposeB ? b.m : b.n;
+        int p = transposeB ? b.n : b.m;
+
+        if (k != kb) {
+            throw new IllegalArgumentException("Cannot multiply matrices due to"
+                    + " incompatible dimensions. The matrix has to have "
+                    + k + " row(s), but it has " + kb);
+        }
+        if (dest.n != n || dest.m != p) {
+            throw new IllegalArgumentException("Destination matrix is " + dest.n
+                    + "x" + dest.m + ", but the product is " + n + "x" + p + ".");
+        }
+        if (dest.values == a.values || dest.values == b.values) {
+            throw new IllegalArgumentException("Destination matrix cannot be one of the operands.");
+        }
+
+        if (!transposeA && !transposeB) {
+            gemm(n, k, p, a.values, 0, b.values, 0, dest.values, 0);
+        } else if (!transposeA) {
+            gemmTransposedB(n, k, p, a.values, b.values, dest.values);
+        } else if (!transposeB) {
+            gemmTransposedA(n, k, p, a.values, b.values, dest.values);
+        } else {
+            gemmTransposedAB(n, k, p, a.values, b.values, dest.values);
+        }
+    }
 
-        for (int i = 0; i < this.getRowCount(); i++) {
-            for (int j = 0; j < other.getColCount(); j++) {
-                for (int k = 0; k < this.getColCount(); k++) {
-                    product.set(i, j,
-                            product.get(i, j)
-                            + this.get(i, k) * other.get(k, j)
-                    );
+    /**
+     * Computes C = A * B^T where B is stored as p-k matrix. Every element of C
+     * is a dot product of two contiguous rows.
+     */
+    private static void gemmTransposedB(int n, int k, int p, double[] a, double[] b, double[] c) {
+        for (int i = 0; i < n; i++) {
+            int rowA = i * k;
+            for (int j = 0; j < p; j++) {
+                int rowB = j * k;
+                double sum = 0.0;
+                for (int l = 0; l < k; l++) {
+                    sum += a[rowA + l] * b[rowB + l];
                 }
+                c[i * p + j] = sum;
             }
         }
+    }
 
-        return product;
+    /**
+     * Computes C = A^T * B where A is stored as k-n matrix, as a sequence of
+     * rank-1 updates by rows of A and B.
+     */
+    private static void gemmTransposedA(int n, int k, int p, double[] a, double[] b, double[] c) {
+        Arrays.fill(c, 0, n * p, 0.0);
+        for (int l = 0; l < k; l++) {
+            int rowA = l * n;
+            int rowB = l * p;
+            for (int i = 0; i < n; i++) {
+                double ali = a[rowA + i];
+                int rowC = i * p;
+                for (int j = 0; j < p; j++) {
+                    c[rowC + j] += ali * b[rowB + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes C = A^T * B^T where A is stored as k-n and B as p-k matrix.
+     */
+    private static void gemmTransposedAB(int n, int k, int p, double[] a, double[] b, double[] c) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                int rowB = j * k;
+                double sum = 0.0;
+                for (int l = 0; l < k; l++) {
+                    sum += a[l * n + i] * b[rowB + l];
+                }
+                c[i * p + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Sets number of threads used for multiplication of large matrices. The
+     * threads belong to a dedicated pool, so they don't compete with other
+     * parallel work. Products with less than 2^18 multiply-adds are always
+     * computed sequentially.
+     *
+     * @param threads number of threads, 1 (or less) disables parallel
+     * multiplication
+     */
+    public static synchronized void setParallelism(int threads) {
+        ForkJoinPool oldPool = pool;
+        pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        if (oldPool != null) {
+            oldPool.shutdown();
+        }
+    }
+
+    /**
+     * @return number of threads used for multiplication of large matrices
+     */
+    public static int getParallelism() {
+        ForkJoinPool currentPool = pool;
+        return (currentPool == null) ? 1 : currentPool.getParallelism();
+    }
+
+    /**
+     * Computes C = A * B on row-major arrays, C is overwritten. Large products
+     * are split into blocks of rows computed in parallel, see
+     * {@link #setParallelism(int)}.
+     *
+     * @param n number of rows of A and C
+     * @param k number of columns of A and rows of B
+     * @param p number of columns of B and C
+     * @param a array with A, row stride k
+     * @param aOff index of A[0,0] in a
+     * @param b array with B, row stride p
+     * @param bOff index of B[0,0] in b
+     * @param c array for C, row stride p
+     * @param cOff index of C[0,0] in c
+     */
+    static void gemm(int n, int k, int p, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+        ForkJoinPool currentPool = pool;
+        if (currentPool == null || n < 2 * BLOCK_ROWS || (long) n * k * p < PARALLEL_THRESHOLD) {
+            gemmSequential(n, k, p, a, aOff, b, bOff, c, cOff);
+        } else {
+            // several blocks per thread to balance uneven progress of threads
+            int rowsPerTask = (n + 4 * currentPool.getParallelism() - 1) / (4 * currentPool.getParallelism());
+            rowsPerTask = Math.max(BLOCK_ROWS, (rowsPerTask + BLOCK_ROWS - 1) / BLOCK_ROWS * BLOCK_ROWS);
+            currentPool.invoke(new RowBlockProduct(0, n, rowsPerTask, k, p, a, aOff, b, bOff, c, cOff));
+        }
+    }
+
+    /**
+     * Task computing a block of rows of a product. It splits itself in halves
+     * until the block has at most the given number of rows.
+     */
+    private static final class RowBlockProduct extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int rowsPerTask;
+        private final int k;
+        private final int p;
+        private final double[] a;
+        private final int aOff;
+        private final double[] b;
+        private final int bOff;
+        private final double[] c;
+        private final int cOff;
+
+        RowBlockProduct(int from, int to, int rowsPerTask, int k, int p, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+            this.from = from;
+            this.to = to;
+            this.rowsPerTask = rowsPerTask;
+            this.k = k;
+            this.p = p;
+            this.a = a;
+            this.aOff = aOff;
+            this.b = b;
+            this.bOff = bOff;
+            this.c = c;
+            this.cOff = cOff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= rowsPerTask) {
+                gemmSequential(to - from, k, p, a, aOff + from * k, b, bOff, c, cOff + from * p);
+            } else {
+                // split on a multiple of the micro-kernel height
+                int middle = from + Math.max(BLOCK_ROWS, (to - from) / 2 / BLOCK_ROWS * BLOCK_ROWS);
+                invokeAll(
+                        new RowBlockProduct(from, middle, rowsPerTask, k, p, a, aOff, b, bOff, c, cOff),
+                        new RowBlockProduct(middle, to, rowsPerTask, k, p, a, aOff, b, bOff, c, cOff)
+                );
+            }
+        }
+    }
+
+    /**
+     * Computes C = A * B on row-major arrays in the calling thread, C is
+     * overwritten. The kernel is chosen by shape: matrix-vector product,
+     * vector-matrix product or general cache-blocked product. Every element of
+     * C is accumulated in the order of the shared dimension, so all kernels
+     * give the same result as the textbook algorithm.
+     *
+     * @param n number of rows of A and C
+     * @param k number of columns of A and rows of B
+     * @param p number of columns of B and C
+     * @param a array with A, row stride k
+     * @param aOff index of A[0,0] in a
+     * @param b array with B, row stride p
+     * @param bOff index of B[0,0] in b
+     * @param c array for C, row stride p
+     * @param cOff index of C[0,0] in c
+     */
+    private static void gemmSequential(int n, int k, int p, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+        if (p == 1) {
+            gemv(n, k, a, aOff, b, bOff, c, cOff);
+        } else if (n == 1) {
+            gevm(k, p, a, aOff, b, bOff, c, cOff);
+        } else {
+            Arrays.fill(c, cOff, cOff + n * p, 0.0);
+            gemmBlocked(n, k, p, a, aOff, b, bOff, c, cOff);
+        }
+    }
+
+    /**
+     * Matrix-vector product c = A * b. Rows of A are processed in blocks of
+     * four so that every loaded element of b is used four times.
+     */
+    private static void gemv(int n, int k, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+        int i = 0;
+        for (; i + BLOCK_ROWS <= n; i += BLOCK_ROWS) {
+            int row0 = aOff + i * k;
+            int row1 = row0 + k;
+            int row2 = row1 + k;
+            int row3 = row2 + k;
+            double sum0 = 0.0;
+            double sum1 = 0.0;
+            double sum2 = 0.0;
+            double sum3 = 0.0;
+            for (int j = 0; j < k; j++) {
+                double bj = b[bOff + j];
+                sum0 += a[row0 + j] * bj;
+                sum1 += a[row1 + j] * bj;
+                sum2 += a[row2 + j] * bj;
+                sum3 += a[row3 + j] * bj;
+            }
+            c[cOff + i] = sum0;
+            c[cOff + i + 1] = sum1;
+            c[cOff + i + 2] = sum2;
+            c[cOff + i + 3] = sum3;
+        }
+        // remaining rows
+        for (; i < n; i++) {
+            int row = aOff + i * k;
+            double sum = 0.0;
+            for (int j = 0; j < k; j++) {
+                sum += a[row + j] * b[bOff + j];
+            }
+            c[cOff + i] = sum;
+        }
+    }
+
+    /**
+     * Vector-matrix product c = a * B, computed as a sequence of axpy
+     * operations over contiguous rows of B.
+     */
+    private static void gevm(int k, int p, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+        Arrays.fill(c, cOff, cOff + p, 0.0);
+        for (int l = 0; l < k; l++) {
+            double al = a[aOff + l];
+            int rowB = bOff + l * p;
+            for (int j = 0; j < p; j++) {
+                c[cOff + j] += al * b[rowB + j];
+            }
+        }
+    }
+
+    /**
+     * General product C += A * B in i-k-j order, tiled so that a panel of B
+     * stays in cache while it is used for all rows of A. The micro-kernel
+     * updates four rows of C from one streamed row of B.
+     */
+    private static void gemmBlocked(int n, int k, int p, double[] a, int aOff, double[] b, int bOff, double[] c, int cOff) {
+        for (int kk = 0; kk < k; kk += BLOCK_DEPTH) {
+            int kEnd = Math.min(kk + BLOCK_DEPTH, k);
+            for (int jj = 0; jj < p; jj += BLOCK_COLS) {
+                int jEnd = Math.min(jj + BLOCK_COLS, p);
+                int i = 0;
+                for (; i + BLOCK_ROWS <= n; i += BLOCK_ROWS) {
+                    int rowA = aOff + i * k;
+                    int rowC0 = cOff + i * p;
+                    int rowC1 = rowC0 + p;
+                    int rowC2 = rowC1 + p;
+                    int rowC3 = rowC2 + p;
+                    for (int l = kk; l < kEnd; l++) {
+                        double a0 = a[rowA + l];
+                        double a1 = a[rowA + k + l];
+                        double a2 = a[rowA + 2 * k + l];
+                        double a3 = a[rowA + 3 * k + l];
+                        int rowB = bOff + l * p;
+                        for (int j = jj; j < jEnd; j++) {
+                            double bj = b[rowB + j];
+                            c[rowC0 + j] += a0 * bj;
+                            c[rowC1 + j] += a1 * bj;
+                            c[rowC2 + j] += a2 * bj;
+                            c[rowC3 + j] += a3 * bj;
+                        }
+                    }
+                }
+                // remaining rows
+                for (; i < n; i++) {
+                    int rowA = aOff + i * k;
+                    int rowC = cOff + i * p;
+                    for (int l = kk; l < kEnd; l++) {
+                        double al = a[rowA + l];
+                        int rowB = bOff + l * p;
+                        for (int j = jj; j < jEnd; j++) {
+                            c[rowC + j] += al * b[rowB + j];
+                        }
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -255,14 +709,11 @@ public final class Matrix {
      * @return new matrix with is the result of the multiplication
      */
     public Matrix multiplyByScalar(double scalar) {
-        double[][] newValues = new double[n][m];
-        
-        for(int i = 0; i < n; i++) {
-            for(int j = 0; j < m; j++) {
-                newValues[i][j] = values[i][j] * scalar;
-            }
+        double[] newValues = new double[values.length];
+        for (int i = 0; i < newValues.length; i++) {
+            newValues[i] = values[i] * scalar;
         }
-        return new Matrix(newValues);
+        return new Matrix(n, m, newValues);
     }
 
     /**
@@ -286,13 +737,14 @@ public final class Matrix {
      * @return transposition of the matrix
      */
     public Matrix transpose() {
-        double[][] transposedValues = new double[m][n]; 
-		for(int i = 0; i < m; i++) {
-            for(int j = 0; j < n; j++) {
-                transposedValues[i][j] = values[j][i];
+        double[] transposedValues = new double[values.length];
+        for (int i = 0; i < n; i++) {
+            int row = i * m;
+            for (int j = 0; j < m; j++) {
+                transposedValues[j * n + i] = values[row + j];
             }
         }
-		return new Matrix(transposedValues);		
+        return new Matrix(m, n, transposedValues);
     }
 
     /**
@@ -310,21 +762,27 @@ public final class Matrix {
      * @return list containing all values from the matrix
      */
     public List<Double> toList() {
-        List<Double> list = new ArrayList<>(n * m);
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < m; j++) {
-                list.add(this.values[i][j]);
-            }
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
         }
         return list;
     }
 
+    private void checkSameDimensions(Matrix other) {
+        if (n != other.n || m != other.m) {
+            throw new IllegalArgumentException("Matrices have incompatible"
+                    + " dimensions " + n + "x" + m + " and "
+                    + other.n + "x" + other.m + ".");
+        }
+    }
+
     @Override
     public String toString() {
         String repr = "Matrix [" + n + "x" + m + "]\n";
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < m; j++) {
-                repr += String.format("%.3f ", this.values[i][j]);
+                repr += String.format("%.3f ", this.values[i * m + j]);
             }
             repr += '\n';
         }
@@ -333,7 +791,11 @@ public final class Matrix {
 
 	@Override
 	public int hashCode() {
-		return Arrays.deepHashCode(this.values);
+		int hash = 7;
+		hash = 59 * hash + this.n;
+		hash = 59 * hash + this.m;
+		hash = 59 * hash + Arrays.hashCode(this.values);
+		return hash;
 	}
 
 	@Override
@@ -351,7 +813,7 @@ public final class Matrix {
 		if (this.m != other.m) {
 			return false;
 		}
-		if (!Arrays.deepEquals(this.values, other.values)) {
+		if (!Arrays.equals(this.values, other.values)) {
 			return false;
 		}
 		return true;
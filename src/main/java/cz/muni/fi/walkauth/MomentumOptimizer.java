@@ -0,0 +1,74 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Gradient descent with momentum. Steps are accumulated in a velocity which
+ * decays by the momentum coefficient, so consistent directions speed up and
+ * oscillating ones cancel out.
+ *
+ * The Nesterov variant evaluates the gradient at the point where the velocity
+ * is about to move the weights. It is computed from the gradient at the
+ * current weights by the reformulation of Bengio et al.: weights move by
+ * (1 + mu) * v - mu * vPrevious.
+ */
+public final class MomentumOptimizer implements Optimizer {
+
+    public static final double DEFAULT_MOMENTUM = 0.9;
+
+    public static final double DEFAULT_LEARNING_RATE = 0.01;
+
+    private final double momentum;
+
+    private final boolean nesterov;
+
+    // velocity of each weight
+    private Matrix[] velocity;
+
+    /**
+     * Creates classical momentum with the default coefficient.
+     */
+    public MomentumOptimizer() {
+        this(DEFAULT_MOMENTUM, false);
+    }
+
+    /**
+     * @param momentum coefficient of decay of velocity, in [0, 1)
+     * @param nesterov true for Nesterov accelerated gradient
+     */
+    public MomentumOptimizer(double momentum, boolean nesterov) {
+        if (momentum < 0 || momentum >= 1) {
+            throw new IllegalArgumentException("Momentum must be in [0, 1), but it is " + momentum + ".");
+        }
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+    }
+
+    @Override
+    public double getDefaultLearningRate() {
+        return DEFAULT_LEARNING_RATE;
+    }
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        velocity = Optimizer.zerosLike(weights);
+    }
+
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        for (int l = 0; l < weights.length; l++) {
+            double[] w = weights[l].getData();
+            double[] g = gradient[l].getData();
+            double[] v = velocity[l].getData();
+            for (int i = 0; i < w.length; i++) {
+                double previous = v[i];
+                v[i] = momentum * previous - speed * g[i];
+                if (nesterov) {
+                    w[i] += (1 + momentum) * v[i] - momentum * previous;
+                } else {
+                    w[i] += v[i];
+                }
+            }
+        }
+    }
+}
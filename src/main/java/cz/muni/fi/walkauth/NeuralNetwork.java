@@ -1,11 +1,16 @@
 package cz.muni.fi.walkauth;
 
+import cz.muni.fi.walkauth.preprocessing.Dataset;
 import java.util.Arrays;
 
 /**
  * Class that represents neural network. It can have various number of neurons
  * as well as layers.
  *
+ * The network holds only weights. Values of neurons are computed into an
+ * {@link InferenceContext}, either given by the caller or the one owned by the
+ * calling thread, so several threads can compute with one network at once.
+ *
  * @author Jaroslav Cechak
  */
 public class NeuralNetwork {
@@ -13,8 +18,8 @@ public class NeuralNetwork {
     // weights between neurons (1 matrix of weights between adjancent layers
     private Matrix[] weights;
 
-    // values of neurons after the last computation (column vector for each layer)
-    private Matrix[] neuronValues;
+    // context of each thread for computations without explicit context
+    private final ThreadLocal<InferenceContext> threadContext = new ThreadLocal<>();
 
     // some useful instances
     public static final NeuralNetwork IDENTITY = new NeuralNetwork(
@@ -53,7 +58,6 @@ public class NeuralNetwork {
         if (layerSizes.length <= 1) {
             throw new IllegalArgumentException("There can not be only one layer in the neural network. Please insert at least two layers.");
         }
-        this.neuronValues = new Matrix[layerSizes.length];
         this.weights = new Matrix[layerSizes.length - 1];
         for (int i = 0; i < this.weights.length; i++) {
             this.weights[i] = new Matrix(layerSizes[i + 1], layerSizes[i] + 1);
@@ -75,7 +79,6 @@ public class NeuralNetwork {
         }
 
         this.weights = Arrays.copyOf(weights, weights.length);
-        this.neuronValues = new Matrix[weights.length + 1];
     }
 
     public Matrix[] getWeights() {
@@ -93,6 +96,32 @@ public class NeuralNetwork {
         this.weights = Arrays.copyOf(layers, layers.length);
     }
 
+    /**
+     * Creates buffers for values of neurons of this network. The context can
+     * be reused for any number of computations, but only by one thread at a
+     * time.
+     *
+     * @return new context matching topology of the network
+     */
+    public InferenceContext createInferenceContext() {
+        return new InferenceContext(getLayers());
+    }
+
+    /**
+     * Returns context owned by the calling thread, creating it when the thread
+     * has none or the topology of the network has changed.
+     *
+     * @return context of the calling thread
+     */
+    private InferenceContext getThreadContext() {
+        InferenceContext context = threadContext.get();
+        if (context == null || !context.fits(weights)) {
+            context = createInferenceContext();
+            threadContext.set(context);
+        }
+        return context;
+    }
+
     public int[] getLayers() {
 		if (weights.length == 0) {
 			// TODO, after constructor fix, update to retrieve right number
@@ -107,17 +136,36 @@ public class NeuralNetwork {
     }
 
     /**
-     * Get one layer of neuron values
+     * Get one layer of neuron values computed by the last computation without
+     * explicit context in the calling thread. The returned vector is a view of
+     * the thread's buffer, so it changes with the next computation.
+     *
+     * Only single-sample computations fill the buffer. Batched computations
+     * ({@link #computeOutputs(Matrix)} with more than one column,
+     * {@link #computeOutput(double[][])} and
+     * {@link #computeOutput(Dataset, int, int)}) don't change it, so the
+     * values remain those of the last single sample.
      *
      * @param layer layer order number (input layer is 0)
-     * @return column vector of values of neurons in this layer
+     * @return column vector of values of neurons in this layer (with bias as
+     * the first element)
      */
     public Matrix getNeuronValuesInLayer(int layer) {
-        return neuronValues[layer];
+        return getThreadContext().getNeuronValuesInLayer(layer);
     }
 
+    /**
+     * Get value of one neuron computed by the last single-sample computation
+     * without explicit context in the calling thread, see
+     * {@link #getNeuronValuesInLayer(int)}. Batched computations don't change
+     * it.
+     *
+     * @param layer layer order number (input layer is 0)
+     * @param row position of the neuron in the layer, 0 for bias
+     * @return value of the neuron
+     */
     public double getNeuronValue(int layer, int row) {
-        return neuronValues[layer].get(row, 0);
+        return getThreadContext().getNeuronValue(layer, row);
     }
 
     /**
@@ -152,34 +200,213 @@ public class NeuralNetwork {
     /**
      * Computes output values for the given input values.
      *
-     * @param inputs input values
-     * @return output values of output neurons
+     * The inputs can be a batch of samples, one sample in each column. The
+     * whole batch then passes each layer as a single matrix-matrix product,
+     * so the weights are loaded into cache once for all samples.
+     *
+     * @param inputs input values, column vector or matrix with one sample in
+     * each column
+     * @return output values of output neurons, one column for each sample
      */
     public Matrix computeOutputs(Matrix inputs) {
         if (inputs == null) {
             throw new IllegalArgumentException("Input cannot be null.");
         }
         // -1 for bias
-        if (inputs.getColCount() != 1 || inputs.getRowCount() != weights[0].getColCount() - 1) {
+        if (inputs.getColCount() < 1 || inputs.getRowCount() != weights[0].getColCount() - 1) {
             throw new IllegalArgumentException("Input matrix does not have required dimensions. "
                     + "Got " + inputs.getRowCount() + "x" + inputs.getColCount()
-                    + " but expected " + (weights[0].getColCount() - 1) + "x1.");
+                    + " but expected " + (weights[0].getColCount() - 1) + "xN.");
+        }
+
+        int batchSize = inputs.getColCount();
+        if (batchSize > 1) {
+            double[] values = newBatchBuffer(inputs.getRowCount(), batchSize);
+            System.arraycopy(inputs.getData(), 0, values, batchSize, inputs.getRowCount() * batchSize);
+            return propagateBatch(values, batchSize);
+        }
+
+        // column vector is stored as a plain array
+        InferenceContext context = getThreadContext();
+        propagate(inputs.getData(), 0, context);
+
+        double[] outputs = context.getActivations(weights.length);
+        return Matrix.columnVector(Arrays.copyOfRange(outputs, 1, outputs.length));
+    }
+
+    /**
+     * Computes output values for a batch of samples in case there is only one
+     * output neuron. See {@link #computeOutputs(Matrix)}.
+     *
+     * @param samples input values of each sample
+     * @return output of the only output neuron for each sample
+     */
+    public double[] computeOutput(double[][] samples) {
+        if (weights[weights.length - 1].getRowCount() != 1) {
+            throw new UnsupportedOperationException("This neural network has more the one output neuron.");
+        }
+        int batchSize = samples.length;
+        if (batchSize == 0) {
+            return new double[0];
+        }
+
+        // one sample in each column, after the bias row
+        int inputCount = weights[0].getColCount() - 1;
+        double[] values = newBatchBuffer(inputCount, batchSize);
+        for (int s = 0; s < batchSize; s++) {
+            checkInputs(samples[s]);
+            for (int i = 0; i < inputCount; i++) {
+                values[(i + 1) * batchSize + s] = samples[s][i];
+            }
+        }
+
+        // output layer has a single row
+        return propagateBatch(values, batchSize).getData();
+    }
+
+    /**
+     * Computes output values for a range of samples of the data set as one
+     * batch in case there is only one output neuron. See
+     * {@link #computeOutputs(Matrix)}.
+     *
+     * @param samples data set
+     * @param from index of the first sample
+     * @param to index after the last sample
+     * @return output of the only output neuron for each sample of the range
+     */
+    public double[] computeOutput(Dataset samples, int from, int to) {
+        if (weights[weights.length - 1].getRowCount() != 1) {
+            throw new UnsupportedOperationException("This neural network has more the one output neuron.");
+        }
+        int batchSize = to - from;
+        if (batchSize <= 0) {
+            return new double[0];
+        }
+        int inputCount = weights[0].getColCount() - 1;
+        checkInputs(samples.getSampleLength());
+
+        // one sample in each column, after the bias row
+        double[] data = samples.getValues();
+        double[] values = newBatchBuffer(inputCount, batchSize);
+        for (int s = 0; s < batchSize; s++) {
+            int offset = samples.getOffset(from + s);
+            for (int i = 0; i < inputCount; i++) {
+                values[(i + 1) * batchSize + s] = data[offset + i];
+            }
+        }
+
+        // output layer has a single row
+        return propagateBatch(values, batchSize).getData();
+    }
+
+    /**
+     * Allocates buffer for values of one layer for a batch of samples. The
+     * first row is the bias (all ones), followed by one row for each neuron.
+     *
+     * @param neurons number of neurons in the layer
+     * @param batchSize number of samples in the batch
+     * @return row-major (neurons + 1)-batchSize buffer with bias row set
+     */
+    private static double[] newBatchBuffer(int neurons, int batchSize) {
+        double[] buffer = new double[(neurons + 1) * batchSize];
+        Arrays.fill(buffer, 0, batchSize, 1.0);
+        return buffer;
+    }
+
+    /**
+     * Propagates a batch of samples through the network.
+     *
+     * @param inputs buffer of the input layer with bias row set, see
+     * {@link #newBatchBuffer(int, int)}
+     * @param batchSize number of samples in the batch
+     * @return values of output neurons, one column for each sample
+     */
+    private Matrix propagateBatch(double[] inputs, int batchSize) {
+        double[] values = inputs;
+        for (Matrix layer : weights) {
+            int neurons = layer.getRowCount();
+            double[] next = newBatchBuffer(neurons, batchSize);
+            // potentials of all samples go right after the bias row
+            Matrix.gemm(neurons, layer.getColCount(), batchSize,
+                    layer.getData(), 0, values, 0, next, batchSize);
+            potentialsToOutputs(next, batchSize, next.length);
+            values = next;
         }
 
-        Matrix values = inputs;
-        neuronValues[0] = addBias(inputs);
+        int outputs = weights[weights.length - 1].getRowCount();
+        return new Matrix(outputs, batchSize, Arrays.copyOfRange(values, batchSize, values.length));
+    }
+
+    /**
+     * Propagates the input through the network and stores values of all
+     * neurons into the given context. No memory is allocated.
+     *
+     * @param inputs input values
+     * @param context buffers for values of neurons, e.g. from
+     * {@link #createInferenceContext()}
+     * @return the given context
+     */
+    public InferenceContext forward(double[] inputs, InferenceContext context) {
+        checkInputs(inputs);
+        return forward(inputs, 0, context);
+    }
+
+    /**
+     * Propagates input values stored in a part of a larger array (e.g. one
+     * sample of a {@link Dataset}) through the network, see
+     * {@link #forward(double[], InferenceContext)}.
+     *
+     * @param values array with the input values
+     * @param offset position of the first input value
+     * @param context buffers for values of neurons
+     * @return the given context
+     */
+    public InferenceContext forward(double[] values, int offset, InferenceContext context) {
+        if (values == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
+        }
+        if (!context.fits(weights)) {
+            throw new IllegalArgumentException("Inference context does not match topology of the network.");
+        }
+        propagate(values, offset, context);
+        return context;
+    }
+
+    /**
+     * Propagates the input through the network. Values of all neurons are
+     * written into the preallocated buffers of the context.
+     *
+     * @param inputs array with the input values (without bias)
+     * @param offset position of the first input value
+     * @param context buffers for values of neurons
+     */
+    private void propagate(double[] inputs, int offset, InferenceContext context) {
+        double[] inputLayer = context.getActivations(0);
+        System.arraycopy(inputs, offset, inputLayer, 1, inputLayer.length - 1);
         for (int l = 1; l <= weights.length; l++) {
-            // sum all inputs and apply activation function
-            Matrix potentials = weights[l - 1].multiply(neuronValues[l - 1]);
-            values = potentialsToOutputs(potentials);
+            // sum all inputs into potentials right after the bias slot
+            Matrix layer = weights[l - 1];
+            double[] values = context.getActivations(l);
+            Matrix.gemm(layer.getRowCount(), layer.getColCount(), 1,
+                    layer.getData(), 0, context.getActivations(l - 1), 0, values, 1);
+            // apply activation function, bias stays in the slot 0
+            potentialsToOutputs(values, 1, values.length);
+        }
+    }
 
-            // add bias to all layers -- including the last one (for consistency)
-            neuronValues[l] = addBias(values);
-            //// only add bias if it's not an output layer
-            //neuronValues[l] = (l == weights.length) ? values : addBias(values);
+    private void checkInputs(double[] inputs) {
+        if (inputs == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
         }
+        checkInputs(inputs.length);
+    }
 
-        return values; //neuronValues[neuronValues.length - 1];
+    private void checkInputs(int length) {
+        // -1 for bias
+        if (length != weights[0].getColCount() - 1) {
+            throw new IllegalArgumentException("Input does not have required size. "
+                    + "Got " + length + " but expected " + (weights[0].getColCount() - 1) + ".");
+        }
     }
 
     /**
@@ -197,39 +424,61 @@ public class NeuralNetwork {
     }
 
     /**
-     * Adds bias to input for the next layer as the first item of vector
+     * Computes output value in case there is only one output neuron. Unlike
+     * {@link #computeOutput(Matrix)}, this method does not allocate any
+     * memory. Values of neurons are stored in the context of the calling
+     * thread.
      *
-     * @param input input to be modified
-     * @return input with bais as the first element of the vector
+     * @param inputs input values
+     * @return output of the only output neuron
      */
-    private static Matrix addBias(Matrix input) {
-        double[][] newInput = new double[input.getRowCount() + 1][1];
-        newInput[0][0] = 1;
+    public double computeOutput(double[] inputs) {
+        return computeOutput(inputs, getThreadContext());
+    }
 
-        for (int i = 0; i < input.getRowCount(); i++) {
-            newInput[i + 1][0] = input.getValues()[i][0];
+    /**
+     * Computes output value in case there is only one output neuron, values of
+     * neurons are stored in the given context.
+     *
+     * @param inputs input values
+     * @param context buffers for values of neurons
+     * @return output of the only output neuron
+     */
+    public double computeOutput(double[] inputs, InferenceContext context) {
+        if (weights[weights.length - 1].getRowCount() != 1) {
+            throw new UnsupportedOperationException("This neural network has more the one output neuron.");
         }
-
-        return new Matrix(newInput);
+        return forward(inputs, context).getOutput();
     }
 
     /**
-     * Applies activation function to potential of every neuron.
+     * Computes output value for input values stored in a part of a larger
+     * array (e.g. one sample of a {@link Dataset}) in case there is only one
+     * output neuron. Values of neurons are stored in the given context.
      *
-     * @param potentials potentials of neurons
-     * @return matrix with neurons' outputs
+     * @param values array with the input values
+     * @param offset position of the first input value
+     * @param context buffers for values of neurons
+     * @return output of the only output neuron
      */
-    private static Matrix potentialsToOutputs(Matrix potentials) {
-        if (potentials == null) {
-            throw new IllegalArgumentException("Potetial matrix cannot be null.");
+    public double computeOutput(double[] values, int offset, InferenceContext context) {
+        if (weights[weights.length - 1].getRowCount() != 1) {
+            throw new UnsupportedOperationException("This neural network has more the one output neuron.");
         }
+        return forward(values, offset, context).getOutput();
+    }
 
-        for (int i = 0; i < potentials.getRowCount(); i++) {
-            double potential = potentials.get(i, 0);
-            potentials.set(i, 0, ActivationUtils.activationFunction(potential));
+    /**
+     * Applies activation function to potential of every neuron.
+     *
+     * @param potentials potentials of neurons, replaced by their outputs
+     * @param from index of the first potential
+     * @param to index after the last potential
+     */
+    private static void potentialsToOutputs(double[] potentials, int from, int to) {
+        for (int i = from; i < to; i++) {
+            potentials[i] = ActivationUtils.activationFunction(potentials[i]);
         }
-
-        return potentials;
     }
 
     @Override
@@ -1,10 +1,11 @@
 package cz.muni.fi.walkauth;
 
+import cz.muni.fi.walkauth.preprocessing.Dataset;
 import cz.muni.fi.walkauth.preprocessing.Sample;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.function.BiFunction;
-import java.util.stream.DoubleStream;
+import java.util.function.DoubleSupplier;
 import org.apache.log4j.Logger;
 
 /**
@@ -23,69 +24,20 @@ public class NeuralNetworkLearning {
      * @return partial derivatives of error function with respect to each weight
      */
     public static Matrix[] backpropagation(NeuralNetwork neuralNetwork, Sample[] data) {
-        Matrix[] weights = neuralNetwork.getWeights();
-        int layersCount = weights.length;
-
-        // initialize gradient to zero
-        Matrix[] gradient = new Matrix[layersCount];
-        for (int i = 0; i < layersCount; i++) {
-            gradient[i] = Matrix.zeros(weights[i].getRowCount(), weights[i].getColCount());
-        }
-
-        for (Sample sample : data) {
-            // compute partial derivatives of error wrt. neuron values
-            Matrix[] errorWrtValues = new Matrix[layersCount + 1];
-            double output = neuralNetwork.computeOutput(Matrix.columnVector(sample.getEntries()));
-            double expectedOutput = ActivationUtils.labelValue(sample);
-            // bias doesn't contain any error (-> 0.0)
-            errorWrtValues[layersCount] = Matrix.columnVector(new double[]{0.0, output - expectedOutput});
-            // go from back to front, but omit the input layer
-            for (int l = layersCount - 1; l > 0; l--) {
-                // for each neuron from the next layer, multiply derivative wrt.
-                // to value with the derivative of activation function to obtain
-                // partial derivatives of error wrt. to inner potentials
-                Matrix nextNeuronValues = neuralNetwork.getNeuronValuesInLayer(l + 1);
-                Matrix errorWrtPotentials = Matrix.zeros(nextNeuronValues.getRowCount(), 1);
-                for (int r = 1; r < nextNeuronValues.getRowCount(); r++) {
-                    double errorPartial = errorWrtValues[l + 1].get(r, 0)
-                            * ActivationUtils.activationFunctionDerivative(nextNeuronValues.get(r, 0));
-                    errorWrtPotentials.set(r, 0, errorPartial);
-                }
-
-                // compute partial derivatives of error wrt. to values of
-                // neurons in current layer
-                Matrix neuronValues = neuralNetwork.getNeuronValuesInLayer(l);
-                errorWrtValues[l] = Matrix.zeros(neuronValues.getRowCount(), 1);
-                for (int j = 1; j < errorWrtValues[l].getRowCount(); j++) {
-                    double errorPartial = 0.0;
-                    // NOTE: istead of r starting from 1 and then subtracting 1,
-                    // it would be better to work with vector without bias (?)
-                    for (int r = 1; r < errorWrtPotentials.getRowCount(); r++) {
-                        errorPartial += errorWrtPotentials.get(r, 0)
-                                * weights[l].get(r - 1, j);
-                    }
-                    errorWrtValues[l].set(j, 0, errorPartial);
-                }
-
-            }
-
-            // and now compute partial derivatives of error wrt. weights
-            for (int l = 0; l < layersCount; l++) {
-                Matrix oneSampleGradient = new Matrix(weights[l].getRowCount(), weights[l].getColCount());
-                for (int j = 0; j < weights[l].getRowCount(); j++) {
-                    for (int i = 0; i < weights[l].getColCount(); i++) {
-                        double errorPartial = errorWrtValues[l + 1].get(j + 1, 0)
-                                * ActivationUtils.activationFunctionDerivative(neuralNetwork.getNeuronValue(l + 1, j + 1))
-                                * neuralNetwork.getNeuronValue(l, i);
-                        oneSampleGradient.set(j, i, errorPartial);
-                    }
-                }
-                // add gradient for the current sample to the total gradient
-                gradient[l] = gradient[l].add(oneSampleGradient);
-            }
-        }
+        return backpropagation(neuralNetwork, Dataset.of(data));
+    }
 
-        return gradient;
+    /**
+     * Backpropagation algorithm for computing gradient of error function.
+     *
+     * @param neuralNetwork configuration of neural network
+     * @param data data for evaluating the error
+     * @return partial derivatives of error function with respect to each weight
+     */
+    public static Matrix[] backpropagation(NeuralNetwork neuralNetwork, Dataset data) {
+        GradientAccumulator accumulator = new GradientAccumulator(neuralNetwork);
+        accumulator.accumulate(neuralNetwork, data, 0, data.size());
+        return accumulator.getGradient();
     }
 
     /**
@@ -97,8 +49,17 @@ public class NeuralNetworkLearning {
      * weight, normalized to a unit vector
      */
     public static Matrix[] normalizedGradient(NeuralNetwork neuralNetwork, Sample[] data) {
-        Matrix[] gradient = backpropagation(neuralNetwork, data);
+        return normalize(backpropagation(neuralNetwork, data));
+    }
 
+    /**
+     * Normalizes gradient to a unit vector in place. Gradient that is almost
+     * zero is left as it is.
+     *
+     * @param gradient partial derivatives of error function
+     * @return the given gradient
+     */
+    static Matrix[] normalize(Matrix[] gradient) {
         double squares = 0.0;
         for (int l = 0; l < gradient.length; l++) {
             for (int i = 0; i < gradient[l].getRowCount(); i++) {
@@ -139,67 +100,131 @@ public class NeuralNetworkLearning {
      * @return trained neural network
      */
     public static NeuralNetwork gradienDescent(NeuralNetwork neuralNetwork, Sample[] trainingData, Sample[] validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations) {
+        return gradienDescent(neuralNetwork, trainingData, validationData, acceptableError, learningSpeed, maxIterations, new TrainingOptions());
+    }
+
+    /**
+     * Gradient descent algorithm for neural network training.
+     *
+     * @param neuralNetwork neural network that is to be trained
+     * @param trainingData array of training inputs
+     * @param validationData array of valdation inputs
+     * @param acceptableError maximal acceptable error
+     * @param learningSpeed function that for the given number of passes returns
+     * learning speed (epsilon from slides)
+     * @param maxIterations maximal number of iteration of gradient descent
+     * @param options further settings of the training
+     * @return trained neural network
+     */
+    public static NeuralNetwork gradienDescent(NeuralNetwork neuralNetwork, Sample[] trainingData, Sample[] validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations, TrainingOptions options) {
+        return gradienDescent(neuralNetwork, Dataset.of(trainingData), Dataset.of(validationData), acceptableError, learningSpeed, maxIterations, options);
+    }
+
+    /**
+     * Gradient descent algorithm for neural network training.
+     *
+     * @param neuralNetwork neural network that is to be trained
+     * @param trainingData training inputs
+     * @param validationData valdation inputs
+     * @param acceptableError maximal acceptable error
+     * @param learningSpeed function that for the given number of passes returns
+     * learning speed (epsilon from slides)
+     * @param maxIterations maximal number of iteration of gradient descent
+     * @param options further settings of the training
+     * @return trained neural network
+     */
+    public static NeuralNetwork gradienDescent(NeuralNetwork neuralNetwork, Dataset trainingData, Dataset validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations, TrainingOptions options) {
+        try (ParallelBackpropagation backpropagation = new ParallelBackpropagation(neuralNetwork, options.getThreads());
+                ParallelEvaluation evaluation = new ParallelEvaluation(options.getThreads())) {
+            return runGradientDescent(neuralNetwork, trainingData, validationData, acceptableError, learningSpeed, maxIterations, options, backpropagation, evaluation);
+        }
+    }
+
+    /**
+     * Gradient descent loop, see gradienDescent. One iteration (step) is one
+     * epoch, i.e. one pass over the training data. With mini-batches the
+     * epoch visits the samples in a random order given by a permutation of
+     * their indices and updates the weights after each batch.
+     */
+    private static NeuralNetwork runGradientDescent(NeuralNetwork neuralNetwork, Dataset trainingData, Dataset validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations, TrainingOptions options, ParallelBackpropagation backpropagation, ParallelEvaluation evaluation) {
         double error;
         int step = 0;
         int numberOfLayers = neuralNetwork.getWeights().length;
         boolean isLearning = true;
-        // copy the given neural network
-        NeuralNetwork trainedNeuralNetwork = new NeuralNetwork(neuralNetwork.getWeights());
-        error = Evaluation.computeError(trainedNeuralNetwork, validationData);
-
+        boolean isImproving = true;
+        int batchSize = options.getBatchSize();
+        Optimizer optimizer = options.getOptimizer();
+        int evaluationInterval = options.getEvaluationInterval();
+        int patience = options.getPatience();
+        // copy the given neural network, its weights are updated in place
+        Matrix[] weights = copyWeights(neuralNetwork.getWeights());
+        NeuralNetwork trainedNeuralNetwork = new NeuralNetwork(weights);
+        // weights before the current epoch
+        Matrix[] previousLayers = copyWeights(weights);
+        // order of samples, shuffled every epoch in mini-batch mode
+        boolean miniBatch = batchSize > 0 && batchSize < trainingData.size();
+        if (miniBatch && optimizer.isFullBatch()) {
+            throw new IllegalArgumentException("Optimizer " + optimizer.getClass().getSimpleName() + " cannot be used with mini-batches.");
+        }
+        int[] order = miniBatch ? identityPermutation(trainingData.size()) : null;
+        SplittableRandom random = options.getRandom().split();
+        optimizer.initialize(weights);
+        // mean error of a sample, consistent with the mean gradient
+        DoubleSupplier trainingError = () -> evaluation.evaluate(trainedNeuralNetwork, trainingData).getError() / trainingData.size();
         LogUtils.printLearningHeader();
-        LogUtils.logLearning(new double[]{
-                step,
-                error,
-                Evaluation.computeRMSE(trainedNeuralNetwork, validationData),
-                Evaluation.computeAccuracy(trainedNeuralNetwork, validationData),
-                Evaluation.computePrecision(trainedNeuralNetwork, validationData),
-                Evaluation.computeRecall(trainedNeuralNetwork, validationData),
-                Evaluation.computeF1(trainedNeuralNetwork, validationData),
-                Evaluation.computeError(trainedNeuralNetwork, trainingData),
-                Evaluation.computeRMSE(trainedNeuralNetwork, trainingData),
-                Evaluation.computeAccuracy(trainedNeuralNetwork, trainingData),
-                Evaluation.computePrecision(trainedNeuralNetwork, trainingData),
-                Evaluation.computeRecall(trainedNeuralNetwork, trainingData),
-                Evaluation.computeF1(trainedNeuralNetwork, trainingData)
-            });
-
-        while (error > acceptableError && step < maxIterations && isLearning) {
-            step++;
-            Matrix[] newLayers = new Matrix[numberOfLayers];
-            Matrix[] errorDerivationsByWeight = normalizedGradient(trainedNeuralNetwork, trainingData);
-
-            for (int i = 0; i < numberOfLayers; i++) {
-                double speed = learningSpeed.apply(step, Evaluation.computeError(trainedNeuralNetwork, trainingData));
-                Matrix errorDerivationByWeight = errorDerivationsByWeight[i];
-                // subtract gradient times speed to the original weights
-                newLayers[i] = trainedNeuralNetwork.getWeights()[i].add(errorDerivationByWeight.multiplyByScalar(-1 * speed)); /*((error < 100) ? (error / trainingData.length) : 1)*/
+        // evaluation and logging of the progress run in background, the
+        // stopping condition uses the most recent finished evaluation
+        try (AsyncEvaluator evaluator = new AsyncEvaluator(evaluation, weights, trainingData, validationData)) {
+            error = evaluator.getLatest().getValidation().getError();
+
+            while (error > acceptableError && step < maxIterations && isLearning && isImproving) {
+                step++;
+                double speed = learningSpeed.apply(step, evaluator.getLatest().getTraining().getError());
+                for (int i = 0; i < numberOfLayers; i++) {
+                    previousLayers[i].copyFrom(weights[i]);
+                }
 
+                if (miniBatch) {
+                    shuffle(order, random);
+                    for (int from = 0; from < order.length; from += batchSize) {
+                        int to = Math.min(from + batchSize, order.length);
+                        Matrix[] errorDerivationsByWeight = mean(backpropagation.computeGradient(trainedNeuralNetwork, trainingData, order, from, to), to - from);
+                        optimizer.update(weights, errorDerivationsByWeight, speed, trainingError);
+                    }
+                } else {
+                    Matrix[] errorDerivationsByWeight = mean(backpropagation.computeGradient(trainedNeuralNetwork, trainingData), trainingData.size());
+                    optimizer.update(weights, errorDerivationsByWeight, speed, trainingError);
+                }
+                isLearning = !Arrays.equals(previousLayers, weights);
+                if (step % evaluationInterval == 0) {
+                    evaluator.submit(step, weights);
+                    if (options.isReproducible()) {
+                        evaluator.await();
+                    }
+                }
+                error = evaluator.getLatest().getValidation().getError();
+                // measured by the evaluated iterations, which may lag behind
+                isImproving = patience == 0 || evaluator.getLatest().getStep() - evaluator.getBest().getStep() < patience;
+            }
+
+            // wait for evaluation of the final weights
+            if (step % evaluationInterval != 0) {
+                evaluator.submit(step, weights);
+            }
+            evaluator.close();
+            error = evaluator.getLatest().getValidation().getError();
+
+            // return the weights with the lowest validation error
+            if (evaluator.getBest().getStep() != step) {
+                evaluator.copyBestWeights(weights);
+                System.out.println("Returning weights from iteration " + evaluator.getBest().getStep() + " with the lowest validation error.");
             }
-            isLearning = !Arrays.equals(newLayers, trainedNeuralNetwork.getWeights());
-
-            trainedNeuralNetwork.setWeights(newLayers);
-            error = Evaluation.computeError(trainedNeuralNetwork, validationData);
-
-            LogUtils.logLearning(new double[]{
-                step,
-                error,
-                Evaluation.computeRMSE(trainedNeuralNetwork, validationData),
-                Evaluation.computeAccuracy(trainedNeuralNetwork, validationData),
-                Evaluation.computePrecision(trainedNeuralNetwork, validationData),
-                Evaluation.computeRecall(trainedNeuralNetwork, validationData),
-                Evaluation.computeF1(trainedNeuralNetwork, validationData),
-                Evaluation.computeError(trainedNeuralNetwork, trainingData),
-                Evaluation.computeRMSE(trainedNeuralNetwork, trainingData),
-                Evaluation.computeAccuracy(trainedNeuralNetwork, trainingData),
-                Evaluation.computePrecision(trainedNeuralNetwork, trainingData),
-                Evaluation.computeRecall(trainedNeuralNetwork, trainingData),
-                Evaluation.computeF1(trainedNeuralNetwork, trainingData)
-            });
         }
 
         if (error <= acceptableError) {
             System.out.println("Gradient descent finnished with error being lower than acceptable error.");
+        } else if (!isImproving) {
+            System.out.println("Gradient descent finnished due to validation error not improving in " + patience + " iterations.");
         } else if (step == maxIterations) {
             System.out.println("Gradient descent finnished due to exceeding " + maxIterations + " iterations.");
         } else {
@@ -212,7 +237,60 @@ public class NeuralNetworkLearning {
         return trainedNeuralNetwork;
     }
 
-    
+    /**
+     * Divides the sum of gradients of samples by their number in place.
+     *
+     * @param gradient sum of gradients
+     * @param samples number of samples
+     * @return the given gradient
+     */
+    private static Matrix[] mean(Matrix[] gradient, int samples) {
+        for (Matrix layer : gradient) {
+            layer.scaleInPlace(1.0 / samples);
+        }
+        return gradient;
+    }
+
+    /**
+     * @param length length of the permutation
+     * @return array with numbers from 0 to length - 1 in ascending order
+     */
+    private static int[] identityPermutation(int length) {
+        int[] permutation = new int[length];
+        for (int i = 0; i < length; i++) {
+            permutation[i] = i;
+        }
+        return permutation;
+    }
+
+    /**
+     * Shuffles the array in place (Fisher-Yates).
+     *
+     * @param array array to shuffle
+     * @param random source of randomness
+     */
+    private static void shuffle(int[] array, SplittableRandom random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+
+    /**
+     * Creates deep copy of the given weights.
+     *
+     * @param weights weights to copy
+     * @return array of copied matrices
+     */
+    private static Matrix[] copyWeights(Matrix[] weights) {
+        Matrix[] copy = new Matrix[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            copy[i] = weights[i].copy();
+        }
+        return copy;
+    }
 
     /**
      * Method initialize weights of given network.
@@ -225,6 +303,19 @@ public class NeuralNetworkLearning {
      * @return new instance of NeuralNetwork
      */
     public static NeuralNetwork initializeWeights(NeuralNetwork network) {
+        return initializeWeights(network, new SplittableRandom());
+    }
+
+    /**
+     * Method initialize weights of given network, see
+     * {@link #initializeWeights(NeuralNetwork)}. The same generator state
+     * gives the same weights.
+     *
+     * @param network to be assigned initialized weights
+     * @param random source of the random weights
+     * @return new instance of NeuralNetwork
+     */
+    public static NeuralNetwork initializeWeights(NeuralNetwork network, SplittableRandom random) {
         int[] neurons = network.getLayers();
         Matrix[] newWeights = new Matrix[neurons.length - 1]; // weight are between neurons -> -1
         for (int i = 0; i < neurons.length - 1; i++) {
@@ -234,7 +325,7 @@ public class NeuralNetworkLearning {
             for (int row = 0; row < numOfHighNeurons; row++) {
                 // values
                 for (int col = 0; col < numOfLowNeurons + 1; col++) {
-                    weightsInLayer[row][col] = computeInitWeight(numOfLowNeurons);
+                    weightsInLayer[row][col] = computeInitWeight(numOfLowNeurons, random);
                 }
             }
 
@@ -248,15 +339,14 @@ public class NeuralNetworkLearning {
      * is number of weights pointing in the same neuron as computed weight.
      *
      * @param d is number of neurons on the lower layer
+     * @param random source of the random value
      */
-    private static double computeInitWeight(double d) {
+    private static double computeInitWeight(double d, SplittableRandom random) {
         // compute range value w
         double rangeValue = Math.sqrt(3 / d);
 
         // compute random value r in [0,1]
-        Random rand = new Random(System.nanoTime());
-        DoubleStream ds = rand.doubles();
-        double randomDouble = ds.findAny().getAsDouble();
+        double randomDouble = random.nextDouble();
 
         // make it range [-1,1]
         randomDouble = (randomDouble - 0.5) * 2;
@@ -280,11 +370,49 @@ public class NeuralNetworkLearning {
      * @return Returns trained neural network
      */
     public static NeuralNetwork trainNeuralNetwork(int[] networkTopology, Sample[] trainingData, Sample[] validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations) {
+        return trainNeuralNetwork(networkTopology, trainingData, validationData, acceptableError, learningSpeed, maxIterations, new TrainingOptions());
+    }
+
+    /**
+     * This method trains completly new neural network with given topology on
+     * given data.
+     *
+     * @param networkTopology array of integers that denotes the number of
+     * neurons in each layer
+     * @param trainingData array of training inputs
+     * @param validationData array of valdation inputs
+     * @param acceptableError maximal acceptable error
+     * @param learningSpeed function that for the given number of passes returns
+     * learning speed (epsilon from slides)
+     * @param maxIterations limit for iterations
+     * @param options further settings of the training
+     * @return Returns trained neural network
+     */
+    public static NeuralNetwork trainNeuralNetwork(int[] networkTopology, Sample[] trainingData, Sample[] validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations, TrainingOptions options) {
+        return trainNeuralNetwork(networkTopology, Dataset.of(trainingData), Dataset.of(validationData), acceptableError, learningSpeed, maxIterations, options);
+    }
+
+    /**
+     * This method trains completly new neural network with given topology on
+     * given data.
+     *
+     * @param networkTopology array of integers that denotes the number of
+     * neurons in each layer
+     * @param trainingData training inputs
+     * @param validationData valdation inputs
+     * @param acceptableError maximal acceptable error
+     * @param learningSpeed function that for the given number of passes returns
+     * learning speed (epsilon from slides)
+     * @param maxIterations limit for iterations
+     * @param options further settings of the training
+     * @return Returns trained neural network
+     */
+    public static NeuralNetwork trainNeuralNetwork(int[] networkTopology, Dataset trainingData, Dataset validationData, double acceptableError, BiFunction<Integer, Double, Double> learningSpeed, int maxIterations, TrainingOptions options) {
         NeuralNetwork empty = new NeuralNetwork(networkTopology);
         //System.out.println("New neural network has been created." + empty);
-        NeuralNetwork randomlyInitializedNetwork = initializeWeights(empty);
+        NeuralNetwork randomlyInitializedNetwork = initializeWeights(empty, options.getRandom().split());
         //System.out.println("Weights has been randomly inicialized." + randomlyInitializedNetwork);
-        return gradienDescent(randomlyInitializedNetwork, trainingData, validationData, acceptableError, learningSpeed, maxIterations);
+        return gradienDescent(randomlyInitializedNetwork, trainingData, validationData, acceptableError, learningSpeed, maxIterations, options);
     }
 
 }
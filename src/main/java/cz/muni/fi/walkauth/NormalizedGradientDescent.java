@@ -0,0 +1,39 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Plain gradient descent with the gradient normalized to a unit vector, so
+ * the length of each step is given only by the learning speed. This is the
+ * default optimizer.
+ */
+public final class NormalizedGradientDescent implements Optimizer {
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        // no state
+    }
+
+    /**
+     * The gradient is normalized unless it's zero. The mean gradient of many
+     * samples is small, so unlike {@link NeuralNetworkLearning#normalize}
+     * there is no threshold for small gradients.
+     */
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        double squares = 0;
+        for (Matrix layer : gradient) {
+            for (double g : layer.getData()) {
+                squares += g * g;
+            }
+        }
+        double size = Math.sqrt(squares);
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < weights.length; i++) {
+            // subtract normalized gradient times speed from the weights
+            weights[i].addScaled(gradient[i], -1 * speed / size);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Rule for updating weights of a neural network from the gradient of error
+ * function.
+ *
+ * Optimizers with state (e.g. velocity of momentum) keep it in buffers of the
+ * same shape as the weights, which are allocated by initialize and then only
+ * updated in place. An instance can be reused for another training, but not
+ * for two trainings at once.
+ */
+public interface Optimizer {
+
+    /**
+     * Prepares the optimizer for training of weights of the given shape and
+     * resets its state.
+     *
+     * @param weights weights of the trained network
+     */
+    void initialize(Matrix[] weights);
+
+    /**
+     * Makes one step of training. The gradient is the mean of gradients of
+     * all samples of the step (a mini-batch or the whole training data), so
+     * its size doesn't depend on the number of samples.
+     *
+     * @param weights weights updated in place
+     * @param gradient partial derivatives of error function with respect to
+     * each weight; the optimizer may overwrite them
+     * @param speed learning speed of this step
+     * @param error computes mean error of a sample of the training data for
+     * the current content of weights, consistent with the gradient; used by
+     * optimizers searching along a line
+     */
+    void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error);
+
+    /**
+     * @return learning rate suitable for the mean gradient, used unless
+     * another one is configured; optimizers which choose their steps
+     * themselves don't use it
+     */
+    default double getDefaultLearningRate() {
+        return 0.01;
+    }
+
+    /**
+     * @return true if the optimizer needs gradient and error of the whole
+     * training data, i.e. it cannot be used with mini-batches
+     */
+    default boolean isFullBatch() {
+        return false;
+    }
+
+    /**
+     * Creates state buffer of zeros for each matrix of weights.
+     *
+     * @param weights weights of the trained network
+     * @return matrices of zeros with the same dimensions as the weights
+     */
+    static Matrix[] zerosLike(Matrix[] weights) {
+        Matrix[] zeros = new Matrix[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            zeros[i] = Matrix.zeros(weights[i].getRowCount(), weights[i].getColCount());
+        }
+        return zeros;
+    }
+}
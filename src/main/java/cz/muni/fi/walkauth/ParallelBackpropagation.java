@@ -0,0 +1,181 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Backpropagation computed by several threads at once.
+ *
+ * Samples are split into as many contiguous partitions as there are threads.
+ * Each partition has its own gradient accumulator (with its own inference
+ * context), so the threads share only the weights, which they don't modify.
+ * Partial gradients are then summed pairwise in a binary tree. As both the
+ * partitioning and the shape of the tree depend only on number of threads and
+ * samples, the result is deterministic for a fixed number of threads.
+ *
+ * The instance keeps its threads and buffers, so it should be created once for
+ * the whole training and closed at the end.
+ */
+public final class ParallelBackpropagation implements AutoCloseable {
+
+    // threads computing the partitions, null if there is only one partition
+    private final ForkJoinPool pool;
+
+    // buffers for each partition
+    private final GradientAccumulator[] accumulators;
+
+    /**
+     * Creates backpropagation for networks with the same topology as the
+     * given one.
+     *
+     * @param neuralNetwork network defining the topology
+     * @param threads number of threads (and partitions of samples)
+     */
+    public ParallelBackpropagation(NeuralNetwork neuralNetwork, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, but it is " + threads + ".");
+        }
+        this.pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        this.accumulators = new GradientAccumulator[threads];
+        for (int i = 0; i < threads; i++) {
+            accumulators[i] = new GradientAccumulator(neuralNetwork);
+        }
+    }
+
+    /**
+     * @return number of threads computing the gradient
+     */
+    public int getThreads() {
+        return accumulators.length;
+    }
+
+    /**
+     * Computes gradient of error function over the given samples.
+     *
+     * @param neuralNetwork configuration of neural network
+     * @param data data for evaluating the error
+     * @return partial derivatives of error function with respect to each
+     * weight; the matrices are reused by the next computation
+     */
+    public Matrix[] computeGradient(NeuralNetwork neuralNetwork, Sample[] data) {
+        return computeGradient(neuralNetwork, Dataset.of(data));
+    }
+
+    /**
+     * Computes gradient of error function over the given samples.
+     *
+     * @param neuralNetwork configuration of neural network
+     * @param data data for evaluating the error
+     * @return partial derivatives of error function with respect to each
+     * weight; the matrices are reused by the next computation
+     */
+    public Matrix[] computeGradient(NeuralNetwork neuralNetwork, Dataset data) {
+        if (pool == null) {
+            accumulators[0].reset();
+            accumulators[0].accumulate(neuralNetwork, data, 0, data.size());
+        } else {
+            pool.invoke(new PartitionTask(neuralNetwork, data, null, 0, data.size(), 0, accumulators.length));
+        }
+        return accumulators[0].getGradient();
+    }
+
+    /**
+     * Computes gradient of error function over the samples selected by a
+     * range of indices, e.g. one mini-batch of a shuffled data set.
+     *
+     * @param neuralNetwork configuration of neural network
+     * @param data data for evaluating the error
+     * @param order indices of samples
+     * @param from position of index of the first sample in order
+     * @param to position after index of the last sample in order
+     * @return partial derivatives of error function with respect to each
+     * weight; the matrices are reused by the next computation
+     */
+    public Matrix[] computeGradient(NeuralNetwork neuralNetwork, Sample[] data, int[] order, int from, int to) {
+        return computeGradient(neuralNetwork, Dataset.of(data), order, from, to);
+    }
+
+    /**
+     * Computes gradient of error function over the samples selected by a
+     * range of indices, e.g. one mini-batch of a shuffled data set.
+     *
+     * @param neuralNetwork configuration of neural network
+     * @param data data for evaluating the error
+     * @param order indices of samples
+     * @param from position of index of the first sample in order
+     * @param to position after index of the last sample in order
+     * @return partial derivatives of error function with respect to each
+     * weight; the matrices are reused by the next computation
+     */
+    public Matrix[] computeGradient(NeuralNetwork neuralNetwork, Dataset data, int[] order, int from, int to) {
+        if (pool == null) {
+            accumulators[0].reset();
+            accumulators[0].accumulate(neuralNetwork, data, order, from, to);
+        } else {
+            pool.invoke(new PartitionTask(neuralNetwork, data, order, from, to, 0, accumulators.length));
+        }
+        return accumulators[0].getGradient();
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Task computing gradient of a range of partitions. It splits the range
+     * in halves and then adds gradient of the upper half to the lower one, so
+     * the gradient of the whole range ends up in the accumulator of its first
+     * partition.
+     */
+    private final class PartitionTask extends RecursiveAction {
+
+        private final NeuralNetwork neuralNetwork;
+        private final Dataset data;
+        // indices of samples, null if the samples are taken in order
+        private final int[] order;
+        // range of samples (or of their indices) split among all partitions
+        private final int first;
+        private final int last;
+        // range of partitions
+        private final int from;
+        private final int to;
+
+        PartitionTask(NeuralNetwork neuralNetwork, Dataset data, int[] order, int first, int last, int from, int to) {
+            this.neuralNetwork = neuralNetwork;
+            this.data = data;
+            this.order = order;
+            this.first = first;
+            this.last = last;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int partitions = accumulators.length;
+                int begin = first + (int) ((long) (last - first) * from / partitions);
+                int end = first + (int) ((long) (last - first) * to / partitions);
+                GradientAccumulator accumulator = accumulators[from];
+                accumulator.reset();
+                if (order == null) {
+                    accumulator.accumulate(neuralNetwork, data, begin, end);
+                } else {
+                    accumulator.accumulate(neuralNetwork, data, order, begin, end);
+                }
+            } else {
+                int middle = (from + to) / 2;
+                invokeAll(
+                        new PartitionTask(neuralNetwork, data, order, first, last, from, middle),
+                        new PartitionTask(neuralNetwork, data, order, first, last, middle, to)
+                );
+                accumulators[from].add(accumulators[middle]);
+            }
+        }
+    }
+}
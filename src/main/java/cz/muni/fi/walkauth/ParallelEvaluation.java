@@ -0,0 +1,138 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluation of a neural network computed by several threads at once.
+ *
+ * Samples are split into chunks of fixed size and each chunk passes the
+ * network as one batch (see
+ * {@link NeuralNetwork#computeOutput(Dataset, int, int)}).
+ * Accumulators of the chunks are merged pairwise in a binary tree over the
+ * chunks. Neither the chunks nor the tree depend on number of threads, so the
+ * report is the same for any number of threads.
+ *
+ * The instance keeps its threads, so it should be created once and closed at
+ * the end.
+ */
+public final class ParallelEvaluation implements AutoCloseable {
+
+    // number of samples evaluated as one batch
+    static final int CHUNK_SIZE = 128;
+
+    // threads evaluating the chunks, null if there is only one thread
+    private final ForkJoinPool pool;
+
+    private final int threads;
+
+    /**
+     * @param threads number of threads evaluating the chunks
+     */
+    public ParallelEvaluation(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, but it is " + threads + ".");
+        }
+        this.threads = threads;
+        this.pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * @return number of threads evaluating the chunks
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Evaluates the neural network on given samples, see
+     * {@link Evaluation#evaluate(NeuralNetwork, Sample[])}.
+     *
+     * @param neuralNetwork neural network to evaluate, must have single output
+     * neuron
+     * @param samples samples on which to evaluate the network
+     * @return confusion matrix and error of the network
+     */
+    public EvaluationReport evaluate(NeuralNetwork neuralNetwork, Sample[] samples) {
+        return evaluate(neuralNetwork, Dataset.of(samples));
+    }
+
+    /**
+     * Evaluates the neural network on given data set, see
+     * {@link Evaluation#evaluate(NeuralNetwork, Dataset)}.
+     *
+     * @param neuralNetwork neural network to evaluate, must have single output
+     * neuron
+     * @param samples samples on which to evaluate the network
+     * @return confusion matrix and error of the network
+     */
+    public EvaluationReport evaluate(NeuralNetwork neuralNetwork, Dataset samples) {
+        int chunks = (samples.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunks == 0) {
+            return new EvaluationAccumulator().toReport();
+        }
+        ChunkTask task = new ChunkTask(neuralNetwork, samples, 0, chunks);
+        EvaluationAccumulator accumulator = (pool == null) ? task.compute() : pool.invoke(task);
+        return accumulator.toReport();
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Task evaluating a range of chunks. It splits the range in halves and
+     * merges the accumulator of the upper half into the lower one.
+     */
+    private final class ChunkTask extends RecursiveTask<EvaluationAccumulator> {
+
+        private final NeuralNetwork neuralNetwork;
+        private final Dataset samples;
+        private final int from;
+        private final int to;
+
+        ChunkTask(NeuralNetwork neuralNetwork, Dataset samples, int from, int to) {
+            this.neuralNetwork = neuralNetwork;
+            this.samples = samples;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected EvaluationAccumulator compute() {
+            if (to - from == 1) {
+                return evaluateChunk();
+            }
+            int middle = (from + to) / 2;
+            ChunkTask lower = new ChunkTask(neuralNetwork, samples, from, middle);
+            ChunkTask upper = new ChunkTask(neuralNetwork, samples, middle, to);
+            EvaluationAccumulator accumulator;
+            if (pool == null) {
+                accumulator = lower.compute();
+                accumulator.merge(upper.compute());
+            } else {
+                upper.fork();
+                accumulator = lower.compute();
+                accumulator.merge(upper.join());
+            }
+            return accumulator;
+        }
+
+        private EvaluationAccumulator evaluateChunk() {
+            int begin = from * CHUNK_SIZE;
+            int end = Math.min(begin + CHUNK_SIZE, samples.size());
+            double[] outputs = neuralNetwork.computeOutput(samples, begin, end);
+
+            EvaluationAccumulator accumulator = new EvaluationAccumulator();
+            for (int s = begin; s < end; s++) {
+                accumulator.add(outputs[s - begin], samples.isPositiveUserData(s));
+            }
+            return accumulator;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cz.muni.fi.walkauth;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * RMSProp: each weight moves by its gradient divided by a moving average of
+ * magnitude of its recent gradients, so every weight has its own effective
+ * learning speed.
+ */
+public final class RMSPropOptimizer implements Optimizer {
+
+    public static final double DEFAULT_DECAY = 0.9;
+
+    public static final double DEFAULT_LEARNING_RATE = 0.001;
+
+    // protects division of weights which never had a gradient
+    private static final double EPSILON = 1e-8;
+
+    private final double decay;
+
+    // moving average of squared gradient of each weight
+    private Matrix[] meanSquares;
+
+    /**
+     * Creates RMSProp with the default decay.
+     */
+    public RMSPropOptimizer() {
+        this(DEFAULT_DECAY);
+    }
+
+    /**
+     * @param decay weight of the history in the moving average, in [0, 1)
+     */
+    public RMSPropOptimizer(double decay) {
+        if (decay < 0 || decay >= 1) {
+            throw new IllegalArgumentException("Decay must be in [0, 1), but it is " + decay + ".");
+        }
+        this.decay = decay;
+    }
+
+    @Override
+    public double getDefaultLearningRate() {
+        return DEFAULT_LEARNING_RATE;
+    }
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        meanSquares = Optimizer.zerosLike(weights);
+    }
+
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        for (int l = 0; l < weights.length; l++) {
+            double[] w = weights[l].getData();
+            double[] g = gradient[l].getData();
+            double[] s = meanSquares[l].getData();
+            for (int i = 0; i < w.length; i++) {
+                s[i] = decay * s[i] + (1 - decay) * g[i] * g[i];
+                w[i] -= speed * g[i] / (Math.sqrt(s[i]) + EPSILON);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cz.muni.fi.walkauth;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+
+/**
+ * iRPROP- (Igel and Huesken): every weight has its own step size, which grows
+ * while the sign of its partial derivative stays the same and shrinks when
+ * the sign changes. Only signs of the gradient are used, so, like the
+ * normalized gradient descent, the step doesn't depend on size of the
+ * gradient. When the sign changes, the derivative is treated as zero in the
+ * next step.
+ *
+ * The step sizes replace the learning speed, which is not used. The signs are
+ * meaningful only for the gradient of the whole training data.
+ */
+public final class RpropOptimizer implements Optimizer {
+
+    public static final double INITIAL_STEP = 0.1;
+
+    private static final double INCREASE = 1.2;
+    private static final double DECREASE = 0.5;
+    private static final double MAX_STEP = 50;
+    private static final double MIN_STEP = 1e-6;
+
+    // step size of each weight
+    private Matrix[] steps;
+
+    // gradient of the previous step, zero where the sign changed
+    private Matrix[] previousGradient;
+
+    @Override
+    public void initialize(Matrix[] weights) {
+        steps = Optimizer.zerosLike(weights);
+        for (Matrix step : steps) {
+            Arrays.fill(step.getData(), INITIAL_STEP);
+        }
+        previousGradient = Optimizer.zerosLike(weights);
+    }
+
+    @Override
+    public void update(Matrix[] weights, Matrix[] gradient, double speed, DoubleSupplier error) {
+        for (int l = 0; l < weights.length; l++) {
+            double[] w = weights[l].getData();
+            double[] g = gradient[l].getData();
+            double[] d = steps[l].getData();
+            double[] previous = previousGradient[l].getData();
+            for (int i = 0; i < w.length; i++) {
+                double change = g[i] * previous[i];
+                double derivative = g[i];
+                if (change > 0) {
+                    d[i] = Math.min(d[i] * INCREASE, MAX_STEP);
+                } else if (change < 0) {
+                    d[i] = Math.max(d[i] * DECREASE, MIN_STEP);
+                    derivative = 0;
+                }
+                w[i] -= Math.signum(derivative) * d[i];
+                previous[i] = derivative;
+            }
+        }
+    }
+
+    @Override
+    public boolean isFullBatch() {
+        return true;
+    }
+}
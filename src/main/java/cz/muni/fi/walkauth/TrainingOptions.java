@@ -0,0 +1,183 @@
+package cz.muni.fi.walkauth;
+
+import java.util.SplittableRandom;
+
+/**
+ * Optional settings of neural network training. Every setting has a default
+ * value, so only the non-default ones need to be set.
+ */
+public class TrainingOptions {
+
+    // number of threads computing the gradient
+    private int threads = 1;
+
+    // number of samples in one mini-batch, 0 for full-batch descent
+    private int batchSize = 0;
+
+    // rule for updating weights from the gradient
+    private Optimizer optimizer = new NormalizedGradientDescent();
+
+    // number of iterations between evaluations of the progress
+    private int evaluationInterval = 1;
+
+    // number of iterations without improvement of validation error before
+    // the training stops, 0 to never stop early
+    private int patience = 0;
+
+    // source of randomness of the training
+    private SplittableRandom random = new SplittableRandom();
+
+    // whether the training waits for every evaluation of the progress
+    private boolean reproducible = false;
+
+    /**
+     * @return number of threads computing the gradient
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets number of threads computing the gradient. The training data are
+     * split into this many partitions, so the gradient (up to rounding)
+     * depends on this number, but it's deterministic for a fixed number.
+     *
+     * @param threads number of threads, 1 by default
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, but it is " + threads + ".");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @return number of samples in one mini-batch, 0 for full-batch descent
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets size of mini-batches. With mini-batches, every epoch (iteration)
+     * shuffles training data and makes one step of gradient descent for each
+     * mini-batch. Without them, every iteration makes one step computed from
+     * all training data.
+     *
+     * @param batchSize number of samples in one mini-batch, 0 (default) for
+     * full-batch descent
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("Size of mini-batch cannot be negative, but it is " + batchSize + ".");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return rule for updating weights from the gradient
+     */
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * Sets rule for updating weights from the gradient.
+     *
+     * @param optimizer optimizer, NormalizedGradientDescent by default
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        if (optimizer == null) {
+            throw new IllegalArgumentException("Optimizer cannot be null.");
+        }
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * @return number of iterations between evaluations of the progress
+     */
+    public int getEvaluationInterval() {
+        return evaluationInterval;
+    }
+
+    /**
+     * Sets how often the training progress is evaluated on validation and
+     * training data (and logged). The acceptable error and the early stopping
+     * are checked only against these evaluations. The final weights are
+     * always evaluated.
+     *
+     * @param evaluationInterval number of iterations (epochs in mini-batch
+     * mode) between evaluations, 1 by default
+     */
+    public void setEvaluationInterval(int evaluationInterval) {
+        if (evaluationInterval < 1) {
+            throw new IllegalArgumentException("Evaluation interval must be positive, but it is " + evaluationInterval + ".");
+        }
+        this.evaluationInterval = evaluationInterval;
+    }
+
+    /**
+     * @return number of iterations without improvement of validation error
+     * before the training stops, 0 if it never stops early
+     */
+    public int getPatience() {
+        return patience;
+    }
+
+    /**
+     * Sets early stopping. The training stops when the lowest validation
+     * error hasn't improved for the given number of iterations. Regardless of
+     * this setting, the training returns the evaluated weights with the
+     * lowest validation error.
+     *
+     * @param patience number of iterations, 0 (default) to never stop early
+     */
+    public void setPatience(int patience) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("Patience cannot be negative, but it is " + patience + ".");
+        }
+        this.patience = patience;
+    }
+
+    /**
+     * @return source of randomness of the training
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Sets source of randomness of the training (initial weights and order of
+     * samples in mini-batches). Every part of the training gets its own
+     * generator split from this one, so the training with a seeded generator
+     * is reproducible.
+     *
+     * @param random generator, randomly seeded by default
+     */
+    public void setRandom(SplittableRandom random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random generator cannot be null.");
+        }
+        this.random = random;
+    }
+
+    /**
+     * @return whether the training waits for every evaluation of the progress
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * Sets whether the training waits for every evaluation of the progress.
+     * The evaluations run in background and the learning speed and the
+     * stopping conditions use the most recent finished one, which depends on
+     * timing of the threads. Waiting for them makes the training with a
+     * seeded random generator give always the same weights, but slower.
+     *
+     * @param reproducible true to wait for evaluations, false by default
+     */
+    public void setReproducible(boolean reproducible) {
+        this.reproducible = reproducible;
+    }
+}
@@ -1,12 +1,17 @@
 package cz.muni.fi.walkauth.preprocessing;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Purpose of this class is to provide prepared data for learning.
@@ -15,13 +20,53 @@ import java.util.Random;
  */
 public class DataManager {
 
+	// extension of files with recordings
+	private static final String RECORDING_EXTENSION = ".csv";
+
+	// name of the cache of samples in the directory with recordings
+	static final String CACHE_FILE_NAME = "samples.cache";
+
 	// normalization
 	private Normalization normalization = new Normalization();
 
 	// data
-	private List<Sample> trainingData;
-	private List<Sample> testingData;
-	private List<Sample> validationData;
+	private Dataset trainingData;
+	private Dataset testingData;
+	private Dataset validationData;
+
+	// generator of the random split
+	private final SplittableRandom random;
+
+	// whether the sets are checked for samples with the same values
+	private boolean checkDuplicates = true;
+
+	/**
+	 * Creates data manager with randomly seeded split.
+	 */
+	public DataManager() {
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * Creates data manager, which splits the same data always the same way.
+	 *
+	 * @param seed seed of the random split
+	 */
+	public DataManager(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	/**
+	 * Creates data manager, which splits the data by the given generator.
+	 *
+	 * @param random generator of the random split
+	 */
+	public DataManager(SplittableRandom random) {
+		if (random == null) {
+			throw new IllegalArgumentException("Random generator cannot be null.");
+		}
+		this.random = random;
+	}
 
 	/**
 	 * The method prepares data for neural network learning. 
@@ -50,11 +95,49 @@ public class DataManager {
 			float testDataRatio,
 			float validationDataRatio
 	) throws IOException {
+		prepareData(entriesForSample, entriesForSample, dataPath, positiveUserFilePath,
+				positiveDataRatio, trainDataRatio, testDataRatio, validationDataRatio);
+	}
+
+	/**
+	 * The method prepares data for neural network learning, see
+	 * {@link #prepareData(int, String, String, float, float, float, float)}.
+	 * Samples are windows sliding over each recording by the given number of
+	 * entries. With a stride smaller than entriesForSample the windows
+	 * overlap, which gives more samples without copying the recordings.
+	 *
+	 * Overlapping windows are not split at random, as neighbouring windows
+	 * share most of their entries and would leak from training into testing
+	 * and validation data. Instead each recording is cut into three
+	 * contiguous regions in the ratios of the sets, in random order and
+	 * separated by gaps of entriesForSample entries, and each set gets only
+	 * windows lying inside its regions. Windows over the gaps are left out.
+	 *
+	 * @param entriesForSample - how many entries should be in one sample where one entry is triple x,y,z
+	 * @param windowStride - how many entries are between starts of two consecutive samples of one file
+	 * @param dataPath - file path to the data set
+	 * @param positiveUserFilePath - path to a file, that will be used as positive data (positive user)
+	 * @param positiveDataRatio - how much positive data should stand in datasets [0,1]
+	 * @param trainDataRatio - how much data should be in training data set
+	 * @param testDataRatio - how much data should be in testing data set
+	 * @param validationDataRatio - how much data should be in validation data set
+	 * @throws IOException
+	 */
+	public void prepareData(
+			int entriesForSample,
+			int windowStride,
+			String dataPath,
+			String positiveUserFilePath,
+			float positiveDataRatio,
+			float trainDataRatio,
+			float testDataRatio,
+			float validationDataRatio
+	) throws IOException {
 
-		// crear data
-		trainingData = new ArrayList<>();
-		testingData = new ArrayList<>();
-		validationData = new ArrayList<>();
+		if (entriesForSample < 1 || windowStride < 1) {
+			throw new IllegalArgumentException("Number of entries of a sample (" + entriesForSample
+					+ ") and window stride (" + windowStride + ") must be positive.");
+		}
 
 		// verify ratios
 		if (Math.abs(trainDataRatio + testDataRatio + validationDataRatio - 1) > 0.000001) {
@@ -63,79 +146,75 @@ public class DataManager {
 					+ ", test " + testDataRatio + " and verify data " + validationDataRatio + " has to be 1 in sum.");
 		}
 
-		// load positive user data
-		List<Sample> positiveUserData = getSamplesFromFile(new File(dataPath + positiveUserFilePath), entriesForSample, true);
+		// coordinates of all recordings in filename order
+		File dataDirectory = new File(dataPath);
+		List<File> files = listRecordings(dataDirectory);
+		List<double[]> recordings = loadRecordings(files, new File(dataDirectory, CACHE_FILE_NAME).toPath());
 
-		// load other data
-		List<Sample> negativeUserData = new ArrayList<>();
-		File sampleDir = new File(dataPath);
-		for (File walkDataFile : sampleDir.listFiles()) {
-			// skip the positive user data file
-			if (walkDataFile.getName().equals(positiveUserFilePath)) {
-				continue;
-			}
-			// load walk data
-			negativeUserData.addAll(getSamplesFromFile(walkDataFile, entriesForSample, false));
+		// windows over one block of all users
+		Dataset allData = toDataset(files, recordings, positiveUserFilePath, entriesForSample, windowStride);
+		if (allData.getPositiveCount() == 0 && !containsFile(files, positiveUserFilePath)) {
+			throw new IOException("File " + positiveUserFilePath + " of the positive user is not in " + dataPath + ".");
 		}
 
-		// number of data samples
-		int positiveNum = positiveUserData.size();
-		int negativeNum = negativeUserData.size();
-
-		// adjust numbers according to positiveDataRatio (r = pos / (pos + neg))
-		if (negativeNum >= positiveNum * (1.0f - positiveDataRatio ) / positiveDataRatio) {
-			// there are enough of negative data - most probably will happen
-			negativeNum = Math.round(positiveNum * (1.0f - positiveDataRatio) / positiveDataRatio);
+		float[] ratios = {trainDataRatio, testDataRatio, validationDataRatio};
+		int[][] sets;
+		if (windowStride < entriesForSample) {
+			// overlapping windows, each set from its own regions of the recordings
+			int[] regions = assignRegions(recordings, entriesForSample, windowStride, ratios, random);
+			sets = new int[ratios.length][];
+			for (int set = 0; set < sets.length; set++) {
+				int[] positiveUserData = indicesOf(allData, regions, set, true);
+				int[] negativeUserData = indicesOf(allData, regions, set, false);
+				int[] numbers = balance(positiveUserData.length, negativeUserData.length, positiveDataRatio);
+				sets[set] = split(positiveUserData, negativeUserData,
+						new int[]{numbers[0]}, new int[]{numbers[1]}, random)[0];
+			}
 		} else {
-			// not enough of negative data, reducing positive data - not likely to happen
-			positiveNum = Math.round(negativeNum * positiveDataRatio / (1.0f - positiveDataRatio));
+			int[] positiveUserData = indicesOf(allData, null, 0, true);
+			int[] negativeUserData = indicesOf(allData, null, 0, false);
+			int[] numbers = balance(positiveUserData.length, negativeUserData.length, positiveDataRatio);
+
+			// numbers of positive and negative samples of training, testing and validation data
+			int[] positiveCounts = new int[ratios.length];
+			int[] negativeCounts = new int[ratios.length];
+			for (int set = 0; set < ratios.length; set++) {
+				positiveCounts[set] = Math.round(numbers[0] * ratios[set]);
+				negativeCounts[set] = Math.round(numbers[1] * ratios[set]);
+			}
+			sets = split(positiveUserData, negativeUserData, positiveCounts, negativeCounts, random);
 		}
-		
-		// create training data
-		int trainPosSamplesNum = Math.round(positiveNum * trainDataRatio);
-		int trainNegSamplesNum = Math.round(negativeNum * trainDataRatio);
-		generateData(trainingData, positiveUserData, negativeUserData, trainPosSamplesNum, trainNegSamplesNum);
-
-		// create train data
-		int testUserSamplesNum = Math.round(positiveNum * testDataRatio);
-		int testOthersSamplesNum = Math.round(negativeNum * testDataRatio);
-		generateData(testingData, positiveUserData, negativeUserData, testUserSamplesNum, testOthersSamplesNum);
-
-		// create verify data
-		int validationUserSamplesNum = Math.round(positiveNum * validationDataRatio);
-		int validationOthersSamplesNum = Math.round(negativeNum * validationDataRatio);
-		generateData(validationData, positiveUserData, negativeUserData, validationUserSamplesNum, validationOthersSamplesNum);
-
-		// check if the data are independent
-		for (Sample s : trainingData) {
-			if (testingData.contains(s)) {
+		int[] training = sets[0];
+		int[] testing = sets[1];
+		int[] validation = sets[2];
+
+		// the sets are disjoint, but different windows may still have the same values
+		if (checkDuplicates) {
+			if (containsAny(allData.subset(training), allData.subset(testing))) {
 				throw new IllegalStateException("Samples of training set appears in testing set.");
 			}
-		}
-		for (Sample s : trainingData) {
-			if (validationData.contains(s)) {
+			if (containsAny(allData.subset(training), allData.subset(validation))) {
 				throw new IllegalStateException("Samples of training set appears in validation set.");
 			}
-		}
-		for (Sample s : testingData) {
-			if (validationData.contains(s)) {
+			if (containsAny(allData.subset(testing), allData.subset(validation))) {
 				throw new IllegalStateException("Samples of testing set appears in validation set.");
 			}
 		}
 
 		// compute mean and deviation from all
-		normalization.computeMeanAndDeviation(trainingData);
-		// normalize each
-		trainingData = normalization.normalize(trainingData);
-		testingData = normalization.normalize(testingData);
-		validationData = normalization.normalize(validationData);
+		normalization.computeMeanAndDeviation(allData.subset(training));
+		// normalize the shared block once in place, the sets stay views into it
+		normalization.normalizeInPlace(allData);
+		trainingData = allData.subset(training);
+		testingData = allData.subset(testing);
+		validationData = allData.subset(validation);
 	}
 
 	public String dataOverview() {
 		StringBuilder sb = new StringBuilder();
 
 		sb.append("Each sample has ");
-		sb.append(trainingData.get(0).getEntries().length);
+		sb.append(trainingData.getSampleLength());
 		sb.append(" values.\n");
 		sb.append("train data size: ");
 		sb.append(trainingData.size());
@@ -151,10 +230,21 @@ public class DataManager {
 		sb.append(", original standart deviation: ");
 		sb.append(normalization.getDeviation());
 		sb.append("\n");
+		if (normalization.isPerAxis()) {
+			sb.append("Normalized per axis, original mean values (x, y, z): ");
+			sb.append(normalization.getMean(0)).append(", ");
+			sb.append(normalization.getMean(1)).append(", ");
+			sb.append(normalization.getMean(2));
+			sb.append(", deviations: ");
+			sb.append(normalization.getDeviation(0)).append(", ");
+			sb.append(normalization.getDeviation(1)).append(", ");
+			sb.append(normalization.getDeviation(2));
+			sb.append("\n");
+		}
 		sb.append("Data density (| positive user, - negative user)\n");
 		sb.append("training data density: [");
-		for (Sample s : trainingData) {
-			if (s.isPositiveUserData()) {
+		for (int i = 0; i < trainingData.size(); i++) {
+			if (trainingData.isPositiveUserData(i)) {
 				sb.append("|");
 			} else {
 				sb.append("-");
@@ -163,8 +253,8 @@ public class DataManager {
 		sb.append("]\n");
 
 		sb.append("testing data density: [");
-		for (Sample s : testingData) {
-			if (s.isPositiveUserData()) {
+		for (int i = 0; i < testingData.size(); i++) {
+			if (testingData.isPositiveUserData(i)) {
 				sb.append("|");
 			} else {
 				sb.append("-");
@@ -172,8 +262,8 @@ public class DataManager {
 		}
 		sb.append("]\n");
 		sb.append("validation data density: [");
-		for (Sample s : validationData) {
-			if (s.isPositiveUserData()) {
+		for (int i = 0; i < validationData.size(); i++) {
+			if (validationData.isPositiveUserData(i)) {
 				sb.append("|");
 			} else {
 				sb.append("-");
@@ -181,125 +271,422 @@ public class DataManager {
 		}
 		sb.append("]\n");
 		sb.append("Example of first positive testing sample: [");
+		double[] firstTestingSample = testingData.getSample(0).getEntries();
 		for (int i = 0; i < 5; i++) {
-			sb.append(testingData.get(0).getEntries()[i]);
+			sb.append(firstTestingSample[i]);
 			sb.append(", ");
 		}
-		sb.append(testingData.get(0).getEntries()[5]);
+		sb.append(firstTestingSample[5]);
 		sb.append(", ...\n");
 
 		return sb.toString();
 	}
 
 	/**
-	 * The returned list of samples contains samples created of entries of that
-	 * file. WARNING: the Samples are always indented to the entriesForSample
-	 * count, i.e. last (entriesInFile % entriesForSample) entries are thrown
-	 * away.
+	 * Lists CSV files with recordings in the directory, sorted by name. Other
+	 * files (such as README) are skipped.
+	 *
+	 * @param directory directory with recordings
+	 * @return files sorted by name
+	 * @throws IOException if the directory cannot be listed
 	 */
-	private List<Sample> getSamplesFromFile(File file, int entriesForSample, boolean isPositiveUserData) throws IOException {
-		BufferedReader reader;
-
-		// prepare raw file dor reading
-		reader = new BufferedReader(new FileReader(file));
-
-		// initialize set of samples
-		List<Sample> listOfSamples = new ArrayList<>();
-		double[] entries = new double[3 * entriesForSample];
-		int entryCount = 0;
-
-		String line = reader.readLine();
-		// for every line of file
-		while (line != null) {
-			if (entryCount < 3 * entriesForSample) {
-				String[] coordinates = line.split(",");
-				// check if there are 3 coordinates
-				if (coordinates.length != 4) {
-					throw new IllegalStateException("The entry " + line + " has more coordinates than 3");
+	static List<File> listRecordings(File directory) throws IOException {
+		File[] files = directory.listFiles(file -> file.isFile()
+				&& file.getName().toLowerCase().endsWith(RECORDING_EXTENSION));
+		if (files == null) {
+			throw new IOException("Cannot list files of directory " + directory + ".");
+		}
+		Arrays.sort(files, Comparator.comparing(File::getName));
+		return Arrays.asList(files);
+	}
+
+	/**
+	 * Parses the files concurrently, each into its own array, by at most as
+	 * many threads as there are processors.
+	 *
+	 * @param files CSV files with recordings
+	 * @return coordinates of each file, in the same order as the files
+	 * @throws IOException if any of the files cannot be read
+	 */
+	static List<double[]> loadRecordings(List<File> files) throws IOException {
+		int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<double[]>> futures = new ArrayList<>(files.size());
+			for (File file : files) {
+				futures.add(executor.submit(() -> RecordingParser.parse(file.toPath())));
+			}
+			// collect the results in the order of the files
+			List<double[]> recordings = new ArrayList<>(files.size());
+			for (Future<double[]> future : futures) {
+				recordings.add(getLoaded(future));
+			}
+			return recordings;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the loaded file and rethrows the failure of loading.
+	 */
+	private static double[] getLoaded(Future<double[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Loading of recordings was interrupted.", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Returns coordinates of the recordings, either from the cache or parsed
+	 * from the files. The parsed coordinates are written into the cache for
+	 * the next time.
+	 *
+	 * @param files CSV files with recordings
+	 * @param cacheFile cache of the coordinates
+	 * @return coordinates of each file, in the same order as the files
+	 * @throws IOException if the recordings cannot be read
+	 */
+	static List<double[]> loadRecordings(List<File> files, Path cacheFile) throws IOException {
+		List<double[]> recordings = RecordingCache.read(cacheFile, files);
+		if (recordings != null) {
+			return recordings;
+		}
+
+		recordings = loadRecordings(files);
+		try {
+			RecordingCache.write(cacheFile, files, recordings);
+		} catch (IOException ex) {
+			// the data can be used without the cache
+			System.err.println("Cannot write cache of recordings " + cacheFile + ": " + ex.getMessage());
+		}
+		return recordings;
+	}
+
+	/**
+	 * Joins coordinates of all files into one block and creates windows over
+	 * it. Windows of each file start at its first entry and move by the given
+	 * stride, as long as the whole window fits into the file; no window spans
+	 * two files.
+	 *
+	 * @param files CSV files with recordings
+	 * @param recordings coordinates of each file
+	 * @param positiveUserFileName name of the file of the positive user
+	 * @param entriesForSample number of entries of one window
+	 * @param windowStride number of entries between starts of two windows
+	 * @return windows of all files in the order of the files
+	 */
+	static Dataset toDataset(List<File> files, List<double[]> recordings, String positiveUserFileName, int entriesForSample, int windowStride) {
+		int sampleLength = entriesForSample * RecordingParser.COORDINATES;
+		int strideLength = windowStride * RecordingParser.COORDINATES;
+		long length = 0;
+		int windows = 0;
+		for (double[] recording : recordings) {
+			length += recording.length;
+			windows += windowCount(recording.length, sampleLength, strideLength);
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Recordings have too many values (" + length + ").");
+		}
+
+		double[] values = new double[(int) length];
+		int[] offsets = new int[windows];
+		boolean[] labels = new boolean[windows];
+		int position = 0;
+		int window = 0;
+		for (int i = 0; i < recordings.size(); i++) {
+			double[] recording = recordings.get(i);
+			System.arraycopy(recording, 0, values, position, recording.length);
+			boolean isPositiveUserData = files.get(i).getName().equals(positiveUserFileName);
+			int count = windowCount(recording.length, sampleLength, strideLength);
+			for (int w = 0; w < count; w++) {
+				offsets[window] = position + w * strideLength;
+				labels[window] = isPositiveUserData;
+				window++;
+			}
+			position += recording.length;
+		}
+		return new Dataset(values, offsets, labels, sampleLength);
+	}
+
+	/**
+	 * @return number of windows of the given length and stride which fit into
+	 * the recording
+	 */
+	private static int windowCount(int recordingLength, int sampleLength, int strideLength) {
+		return (recordingLength < sampleLength) ? 0 : (recordingLength - sampleLength) / strideLength + 1;
+	}
+
+	/**
+	 * Cuts each recording into contiguous regions, one for each set, and
+	 * assigns the windows lying inside a region to its set. Sizes of the
+	 * regions are given by the ratios of the sets, their order in each
+	 * recording is random and there is a gap of entriesForSample entries
+	 * between two regions, so windows of different sets never share an
+	 * entry. Windows are enumerated as by {@link #toDataset}.
+	 *
+	 * @param recordings coordinates of each file
+	 * @param entriesForSample number of entries of one window
+	 * @param windowStride number of entries between starts of two windows
+	 * @param ratios ratio of each set
+	 * @param random generator of the order of the regions
+	 * @return index of the set of each window, -1 for windows out of regions
+	 */
+	static int[] assignRegions(List<double[]> recordings, int entriesForSample, int windowStride, float[] ratios, SplittableRandom random) {
+		int sampleLength = entriesForSample * RecordingParser.COORDINATES;
+		int strideLength = windowStride * RecordingParser.COORDINATES;
+		int windows = 0;
+		for (double[] recording : recordings) {
+			windows += windowCount(recording.length, sampleLength, strideLength);
+		}
+
+		int[] assignment = new int[windows];
+		int[] order = new int[ratios.length];
+		int[] from = new int[ratios.length];
+		int[] to = new int[ratios.length];
+		int window = 0;
+		for (double[] recording : recordings) {
+			int entries = recording.length / RecordingParser.COORDINATES;
+			int usable = Math.max(0, entries - (ratios.length - 1) * entriesForSample);
+
+			// entries [from, to) of the region of each set
+			for (int set = 0; set < order.length; set++) {
+				order[set] = set;
+			}
+			shuffle(order, random);
+			int position = 0;
+			int remaining = usable;
+			for (int i = 0; i < order.length; i++) {
+				int set = order[i];
+				// the last region gets the rest left by rounding
+				int size = (i == order.length - 1) ? remaining : Math.min(remaining, Math.round(usable * ratios[set]));
+				from[set] = position;
+				to[set] = position + size;
+				remaining -= size;
+				position = to[set] + entriesForSample;
+			}
+
+			int count = windowCount(recording.length, sampleLength, strideLength);
+			for (int w = 0; w < count; w++) {
+				int start = w * windowStride;
+				assignment[window] = -1;
+				for (int set = 0; set < ratios.length; set++) {
+					if (start >= from[set] && start + entriesForSample <= to[set]) {
+						assignment[window] = set;
+					}
 				}
-				// the first coordinate (0) is time - we do not need it
-				entries[entryCount++] = Double.parseDouble(coordinates[1]);
-				entries[entryCount++] = Double.parseDouble(coordinates[2]);
-				entries[entryCount++] = Double.parseDouble(coordinates[3]);
-			} else {
-				// new sample
-				Sample sample = new Sample(isPositiveUserData, entries);
-				listOfSamples.add(sample);
-				// reset entries
-				entries = new double[3 * entriesForSample];
-				entryCount = 0;
+				window++;
+			}
+		}
+		return assignment;
+	}
+
+	/**
+	 * @param assignment index of the set of each sample, null for all samples
+	 * @param set index of the selected set
+	 * @param positive whether samples of the positive user are selected
+	 * @return indices of the selected samples of the data set
+	 */
+	private static int[] indicesOf(Dataset data, int[] assignment, int set, boolean positive) {
+		int count = 0;
+		for (int i = 0; i < data.size(); i++) {
+			if (data.isPositiveUserData(i) == positive && (assignment == null || assignment[i] == set)) {
+				count++;
 			}
-			line = reader.readLine();
 		}
-		return listOfSamples;
+		int[] indices = new int[count];
+		for (int i = 0, j = 0; i < data.size(); i++) {
+			if (data.isPositiveUserData(i) == positive && (assignment == null || assignment[i] == set)) {
+				indices[j++] = i;
+			}
+		}
+		return indices;
 	}
 
 	/**
-	 * Randomly selects data from userData and othersData and store them in the
-	 * first param. It takes exactly userNum samples from userData and othersNum
-	 * samples from othersData.
+	 * Reduces the number of positive or negative samples to get the given
+	 * ratio of positive ones (r = pos / (pos + neg)).
 	 *
-	 * @param data - input/output variable, the samples are added to it
-	 * @param userData - positive data samples
-	 * @param othersData - negative data samples
-	 * @param userNum - number of positive samples to be added
-	 * @param othersNum - number of negative samples to be added
+	 * @return numbers of positive and negative samples
 	 */
-	private void generateData(List<Sample> data, List<Sample> userData, List<Sample> othersData, int userNum, int othersNum) {
-		Random rnd = new Random(System.currentTimeMillis());
+	private static int[] balance(int positiveNum, int negativeNum, float positiveDataRatio) {
+		if (negativeNum >= positiveNum * (1.0f - positiveDataRatio ) / positiveDataRatio) {
+			// there are enough of negative data - most probably will happen
+			negativeNum = Math.round(positiveNum * (1.0f - positiveDataRatio) / positiveDataRatio);
+		} else {
+			// not enough of negative data, reducing positive data - not likely to happen
+			positiveNum = Math.round(negativeNum * positiveDataRatio / (1.0f - positiveDataRatio));
+		}
+		return new int[]{positiveNum, negativeNum};
+	}
 
-		// compute ratio
-		double ratio = userNum * 1.0 / (userNum + othersNum);
-		ratio *= 100;
+	private static boolean containsFile(List<File> files, String name) {
+		for (File file : files) {
+			if (file.getName().equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
-		while (userNum > 0 || othersNum > 0) {
-			// if there is no sample, break
-			if (userData.isEmpty() && othersData.isEmpty()) {
-				break;
+	/**
+	 * Finds out whether some sample of the first data set has the same values
+	 * and label as a sample of the second one. Samples of the first set are
+	 * put into a hash table, so only samples with the same hash are compared.
+	 * Values have to be exactly the same, samples differing by less than the
+	 * tolerance of {@link Sample#equals(Object)} are different.
+	 *
+	 * @return true if the data sets have a common sample
+	 */
+	static boolean containsAny(Dataset first, Dataset second) {
+		// open addressing, index + 1 of a sample of the first set, 0 for empty slot
+		int capacity = Integer.highestOneBit(Math.max(2, 2 * first.size() - 1)) << 1;
+		int mask = capacity - 1;
+		int[] table = new int[capacity];
+		for (int i = 0; i < first.size(); i++) {
+			int slot = spread(first.sampleHashCode(i)) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
 			}
-			// decide whether to add user or other data
-			if ((userNum == 0) || (userData.isEmpty())) {
-				data.add(othersData.remove(rnd.nextInt(othersData.size())));
-				othersNum--;
-			} else if ((othersNum == 0) || (othersData.isEmpty())) {
-				data.add(userData.remove(rnd.nextInt(userData.size())));
-				userNum--;
-			} else {
-				if (rnd.nextInt(100) > ratio) {
-					data.add(othersData.remove(rnd.nextInt(othersData.size())));
-					othersNum--;
-				} else {
-					data.add(userData.remove(rnd.nextInt(userData.size())));
-					userNum--;
+			table[slot] = i + 1;
+		}
+
+		for (int j = 0; j < second.size(); j++) {
+			for (int slot = spread(second.sampleHashCode(j)) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+				if (first.sampleEquals(table[slot] - 1, second, j)) {
+					return true;
 				}
 			}
 		}
+		return false;
+	}
+
+	/**
+	 * Mixes higher bits of the hash into the lower ones used by the table.
+	 */
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		return hash ^ (hash >>> 13);
+	}
+
+	/**
+	 * Randomly splits samples into disjoint sets with the given numbers of
+	 * positive and negative samples. Indices of both classes are shuffled
+	 * (Fisher-Yates) and cut into consecutive parts, one for each set; then
+	 * the samples of each set are shuffled together. If there are not enough
+	 * samples of a class, the last sets get fewer of them.
+	 *
+	 * @param positive indices of positive samples, shuffled in place
+	 * @param negative indices of negative samples, shuffled in place
+	 * @param positiveCounts number of positive samples of each set
+	 * @param negativeCounts number of negative samples of each set
+	 * @param random generator of the split
+	 * @return indices of samples of each set
+	 */
+	static int[][] split(int[] positive, int[] negative, int[] positiveCounts, int[] negativeCounts, SplittableRandom random) {
+		shuffle(positive, random);
+		shuffle(negative, random);
+
+		int[][] sets = new int[positiveCounts.length][];
+		int positiveFrom = 0;
+		int negativeFrom = 0;
+		for (int i = 0; i < sets.length; i++) {
+			int positiveTo = Math.min(positive.length, positiveFrom + positiveCounts[i]);
+			int negativeTo = Math.min(negative.length, negativeFrom + negativeCounts[i]);
+			int[] set = new int[positiveTo - positiveFrom + negativeTo - negativeFrom];
+			System.arraycopy(positive, positiveFrom, set, 0, positiveTo - positiveFrom);
+			System.arraycopy(negative, negativeFrom, set, positiveTo - positiveFrom, negativeTo - negativeFrom);
+			shuffle(set, random);
+			sets[i] = set;
+			positiveFrom = positiveTo;
+			negativeFrom = negativeTo;
+		}
+		return sets;
+	}
+
+	/**
+	 * Shuffles the array in place by Fisher-Yates algorithm.
+	 */
+	private static void shuffle(int[] array, SplittableRandom random) {
+		for (int i = array.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = array[i];
+			array[i] = array[j];
+			array[j] = swap;
+		}
 	}
 
-	public Sample[] getTrainingData() {
-		return trainingData.toArray(new Sample[trainingData.size()]);
+	/**
+	 * @return training data (no copy)
+	 */
+	public Dataset getTrainingData() {
+		return trainingData;
 	}
 
-	public void setTrainingData(List<Sample> trainData) {
+	public void setTrainingData(Dataset trainData) {
 		this.trainingData = trainData;
 	}
 
-	public Sample[] getTestingData() {
-		return testingData.toArray(new Sample[testingData.size()]);
+	/**
+	 * @return testing data (no copy)
+	 */
+	public Dataset getTestingData() {
+		return testingData;
 	}
 
-	public void setTestingData(List<Sample> testData) {
+	public void setTestingData(Dataset testData) {
 		this.testingData = testData;
 	}
 
-	public Sample[] getValidationData() {
-		return validationData.toArray(new Sample[validationData.size()]);
+	/**
+	 * @return validation data (no copy)
+	 */
+	public Dataset getValidationData() {
+		return validationData;
 	}
 
-	public void setValidationData(List<Sample> verifyData) {
+	public void setValidationData(Dataset verifyData) {
 		this.validationData = verifyData;
 	}
 
+	/**
+	 * @return whether the prepared sets are checked for samples with the same
+	 * values
+	 */
+	public boolean isCheckDuplicates() {
+		return checkDuplicates;
+	}
+
+	/**
+	 * Sets whether {@link #prepareData} checks that no two sets contain
+	 * samples with the same values, e.g. from duplicated recordings. The sets
+	 * never share a sample, so the check can be disabled to save time.
+	 *
+	 * Only exactly the same values are found; unlike
+	 * {@link Sample#equals(Object)}, which tolerates differences up to 1e-6,
+	 * nearly the same samples are not reported.
+	 *
+	 * @param checkDuplicates true (default) to check the sets
+	 */
+	public void setCheckDuplicates(boolean checkDuplicates) {
+		this.checkDuplicates = checkDuplicates;
+	}
+
 	public Normalization getNormalization() {
 		return normalization;
 	}
@@ -0,0 +1,228 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.util.Arrays;
+
+/**
+ * Set of samples of the same length stored in one contiguous array of values
+ * and one array of labels, instead of an object with its own array for every
+ * sample.
+ *
+ * Samples are addressed by their offset in the array of values, so reading a
+ * sample needs no copy. The samples either follow one after another, or
+ * their offsets are given explicitly; then they may also overlap, e.g. as
+ * sliding windows over a recording. A subset selected by indices shares the
+ * block with the original data set and only keeps offsets of its samples.
+ *
+ * The data set is not modified by any of its methods, the arrays returned
+ * without copy must not be modified either, except by the owner of the block
+ * (such as normalization of all values of the block in place).
+ */
+public final class Dataset {
+
+	// block of values shared by subsets
+	private final double[] values;
+
+	// number of values of one sample
+	private final int sampleLength;
+
+	// position of the first value of each sample in the block, null if the
+	// samples follow one after another from the beginning of the block
+	private final int[] offsets;
+
+	// label of each sample, true for the positive user
+	private final boolean[] labels;
+
+	/**
+	 * Creates data set of samples following one after another. The arrays
+	 * are not copied.
+	 *
+	 * @param values values of all samples, one sample after another
+	 * @param labels true for samples of the positive user
+	 * @param sampleLength number of values of one sample
+	 */
+	public Dataset(double[] values, boolean[] labels, int sampleLength) {
+		checkSampleLength(sampleLength);
+		if ((long) labels.length * sampleLength != values.length) {
+			throw new IllegalArgumentException("There are " + values.length + " values for "
+					+ labels.length + " samples of length " + sampleLength + ".");
+		}
+		this.values = values;
+		this.sampleLength = sampleLength;
+		this.offsets = null;
+		this.labels = labels;
+	}
+
+	/**
+	 * Creates data set of samples at the given positions of the block, which
+	 * may overlap. The arrays are not copied.
+	 *
+	 * @param values block of values
+	 * @param offsets position of the first value of each sample
+	 * @param labels true for samples of the positive user
+	 * @param sampleLength number of values of one sample
+	 */
+	public Dataset(double[] values, int[] offsets, boolean[] labels, int sampleLength) {
+		checkSampleLength(sampleLength);
+		if (offsets.length != labels.length) {
+			throw new IllegalArgumentException("There are " + offsets.length + " offsets for " + labels.length + " labels.");
+		}
+		for (int offset : offsets) {
+			if (offset < 0 || (long) offset + sampleLength > values.length) {
+				throw new IndexOutOfBoundsException("Sample at " + offset + " is out of block of " + values.length + " values.");
+			}
+		}
+		this.values = values;
+		this.sampleLength = sampleLength;
+		this.offsets = offsets;
+		this.labels = labels;
+	}
+
+	private static void checkSampleLength(int sampleLength) {
+		if (sampleLength < 0) {
+			throw new IllegalArgumentException("Length of samples cannot be negative, but it is " + sampleLength + ".");
+		}
+	}
+
+	/**
+	 * Copies the samples into a new data set.
+	 *
+	 * @param samples samples of the same length
+	 * @return data set with the samples in the same order
+	 */
+	public static Dataset of(Sample... samples) {
+		int sampleLength = (samples.length == 0) ? 0 : samples[0].getEntries().length;
+		double[] values = new double[samples.length * sampleLength];
+		boolean[] labels = new boolean[samples.length];
+		for (int i = 0; i < samples.length; i++) {
+			double[] entries = samples[i].getEntries();
+			if (entries.length != sampleLength) {
+				throw new IllegalArgumentException("Sample " + i + " has " + entries.length
+						+ " values, but the first one has " + sampleLength + ".");
+			}
+			System.arraycopy(entries, 0, values, i * sampleLength, sampleLength);
+			labels[i] = samples[i].isPositiveUserData();
+		}
+		return new Dataset(values, labels, sampleLength);
+	}
+
+	/**
+	 * @return number of samples
+	 */
+	public int size() {
+		return labels.length;
+	}
+
+	/**
+	 * @return number of values of one sample
+	 */
+	public int getSampleLength() {
+		return sampleLength;
+	}
+
+	/**
+	 * Returns the block of values shared by all subsets (no copy). Values of
+	 * the i-th sample start at {@link #getOffset(int)}.
+	 *
+	 * @return values of the block
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @param index index of the sample
+	 * @return position of the first value of the sample in {@link #getValues()}
+	 */
+	public int getOffset(int index) {
+		return (offsets == null) ? index * sampleLength : offsets[index];
+	}
+
+	/**
+	 * @param index index of the sample
+	 * @return true if the sample belongs to the positive user
+	 */
+	public boolean isPositiveUserData(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * @return number of samples of the positive user
+	 */
+	public int getPositiveCount() {
+		int count = 0;
+		for (int i = 0; i < size(); i++) {
+			if (isPositiveUserData(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param index index of the sample
+	 * @return copy of the sample
+	 */
+	public Sample getSample(int index) {
+		int offset = getOffset(index);
+		return new Sample(isPositiveUserData(index), Arrays.copyOfRange(values, offset, offset + sampleLength));
+	}
+
+	/**
+	 * Compares values and labels of two samples.
+	 *
+	 * @param index index of a sample of this data set
+	 * @param other another data set
+	 * @param otherIndex index of a sample of the other data set
+	 * @return true if the samples have the same label and values
+	 */
+	public boolean sampleEquals(int index, Dataset other, int otherIndex) {
+		if (sampleLength != other.sampleLength || isPositiveUserData(index) != other.isPositiveUserData(otherIndex)) {
+			return false;
+		}
+		int offset = getOffset(index);
+		int otherOffset = other.getOffset(otherIndex);
+		for (int i = 0; i < sampleLength; i++) {
+			if (Double.doubleToLongBits(values[offset + i]) != Double.doubleToLongBits(other.values[otherOffset + i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes hash code of values and label of a sample, consistent with
+	 * {@link #sampleEquals(int, Dataset, int)}.
+	 *
+	 * @param index index of the sample
+	 * @return hash code of the sample
+	 */
+	public int sampleHashCode(int index) {
+		int offset = getOffset(index);
+		int hash = Boolean.hashCode(isPositiveUserData(index));
+		for (int i = 0; i < sampleLength; i++) {
+			long bits = Double.doubleToLongBits(values[offset + i]);
+			hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+		}
+		return hash;
+	}
+
+	/**
+	 * Selects samples without copying them.
+	 *
+	 * @param indices indices of the selected samples in this data set, in the
+	 * order they should have in the subset
+	 * @return data set sharing the block with this one
+	 */
+	public Dataset subset(int[] indices) {
+		int[] subsetOffsets = new int[indices.length];
+		boolean[] subsetLabels = new boolean[indices.length];
+		for (int i = 0; i < indices.length; i++) {
+			if (indices[i] < 0 || indices[i] >= size()) {
+				throw new IndexOutOfBoundsException("Index " + indices[i] + " is out of data set of size " + size() + ".");
+			}
+			subsetOffsets[i] = getOffset(indices[i]);
+			subsetLabels[i] = labels[indices[i]];
+		}
+		return new Dataset(values, subsetOffsets, subsetLabels, sampleLength);
+	}
+}
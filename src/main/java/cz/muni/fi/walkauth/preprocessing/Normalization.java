@@ -1,85 +1,145 @@
 package cz.muni.fi.walkauth.preprocessing;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Class provides tools for data normalization.
  *
+ * Mean and deviation are computed in one pass over the data, separately for
+ * each axis (x, y and z). The data are normalized either by mean and
+ * deviation of all values, or of each axis separately.
  *
  * @author Jiri Mauritz: jirmauritz at gmail dot com
  */
 public class Normalization {
 
-	private Double mean = null;
-	private Double deviation = null;
-	
+	// statistics of each axis, null until computed
+	private Statistics statistics = null;
+
+	// whether each axis is normalized by its own mean and deviation
+	private boolean perAxis = false;
+
 	/**
-	 * Computes mean and deviation of the given set of data.
-	 * The method does NOT change the data.
-	 * 
+	 * Computes mean and deviation of the given set of data, parts of it in
+	 * parallel. The method does NOT change the data.
+	 *
 	 * @param samples - data
 	 */
-	public void computeMeanAndDeviation(List<Sample> samples) {
-		computeMeanValues(samples);
-		computeDeviation(samples);
+	public void computeMeanAndDeviation(Dataset samples) {
+		statistics = null;
+		update(samples);
 	}
-	
+
 	/**
-	 * Provides data normalization - mean will be 0 and deviation 1.
-	 * It is necessary to run computeMeanAndDeviation first.
+	 * Adds further data to the computed mean and deviation, e.g. new
+	 * recordings. The method does NOT change the data.
 	 *
-	 * @param samples - data to normalize
-	 * @return list of normalized samples
+	 * @param samples - data
 	 */
-	public List<Sample> normalize(List<Sample> samples) {
-		int entriesForSample = samples.get(0).getEntries().length;
-		List<Sample> normalized = new ArrayList<>();
-		for (Sample s : samples) {
-			double[] normalizedEntries = new double[entriesForSample];
-			int entryCounter = 0;
-			for (double entry : s.getEntries()) {
-				normalizedEntries[entryCounter++] = normalizeValue(entry);
-			}
-			normalized.add(new Sample(s.isPositiveUserData(), normalizedEntries));
+	public void update(Dataset samples) {
+		double[] values = samples.getValues();
+		int sampleLength = samples.getSampleLength();
+		Statistics added = IntStream.range(0, samples.size()).parallel().collect(
+				() -> new Statistics(RecordingParser.COORDINATES),
+				(partial, s) -> partial.add(values, samples.getOffset(s), samples.getOffset(s) + sampleLength),
+				Statistics::merge);
+		if (statistics == null) {
+			statistics = added;
+		} else {
+			statistics.merge(added);
 		}
-		
-		return normalized;
-	}
-	
-	private double normalizeValue(double value) {
-		return (value - mean) / deviation;
 	}
 
-	private void computeMeanValues(List<Sample> samples) {
-		double sum = 0;
-		for (Sample s : samples) {
-			for (double entry : s.getEntries()) {
-				sum += entry;
-			}
+	/**
+	 * Normalizes all values of the block of the data set in place, i.e. also
+	 * the samples of all data sets sharing the block, and each value just
+	 * once even if samples overlap. It is necessary to run
+	 * computeMeanAndDeviation first.
+	 *
+	 * In per axis mode the block has to start with axis x and so all the
+	 * samples.
+	 *
+	 * @param samples - data to normalize
+	 */
+	public void normalizeInPlace(Dataset samples) {
+		if (statistics == null) {
+			throw new IllegalStateException("Mean and deviation have to be computed before normalization.");
 		}
-		mean = sum / (samples.size() * samples.get(0).getEntries().length);
-	}
-	
-	private void computeDeviation(List<Sample> samples) {
-		if (mean == null) {
-			computeMeanValues(samples);
+		int axes = perAxis ? statistics.getChannels() : 1;
+		double[] means = new double[axes];
+		double[] deviations = new double[axes];
+		for (int axis = 0; axis < axes; axis++) {
+			means[axis] = perAxis ? getMean(axis) : getMean();
+			deviations[axis] = perAxis ? getDeviation(axis) : getDeviation();
 		}
-		double sum = 0;
-		for (Sample s : samples) {
-			for (double entry : s.getEntries()) {
-				sum += Math.pow((entry - mean), 2);
+		for (int s = 0; s < samples.size(); s++) {
+			if (samples.getOffset(s) % axes != 0) {
+				throw new IllegalArgumentException("Sample " + s + " doesn't start with axis x.");
 			}
 		}
-		deviation = Math.sqrt(sum / (samples.size() * samples.get(0).getEntries().length));
+
+		double[] values = samples.getValues();
+		for (int i = 0, axis = 0; i < values.length; i++) {
+			values[i] = (values[i] - means[axis]) / deviations[axis];
+			if (++axis == axes) {
+				axis = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return true if each axis is normalized by its own mean and deviation
+	 */
+	public boolean isPerAxis() {
+		return perAxis;
 	}
 
+	/**
+	 * Sets whether each axis (x, y and z) is normalized by its own mean and
+	 * deviation, or all values by the same ones. Both are computed at once,
+	 * so the setting can be changed after computeMeanAndDeviation.
+	 *
+	 * @param perAxis true to normalize each axis separately, false by default
+	 */
+	public void setPerAxis(boolean perAxis) {
+		this.perAxis = perAxis;
+	}
+
+	/**
+	 * @return statistics of each axis, null if they haven't been computed
+	 */
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return mean of all values, null if it hasn't been computed
+	 */
 	public Double getMean() {
-		return mean;
+		return (statistics == null) ? null : statistics.total().getMean(0);
 	}
 
+	/**
+	 * @return deviation of all values, null if it hasn't been computed
+	 */
 	public Double getDeviation() {
-		return deviation;
+		return (statistics == null) ? null : Math.sqrt(statistics.total().getVariance(0));
+	}
+
+	/**
+	 * @param axis - index of the axis, 0 for x
+	 * @return mean of the axis
+	 */
+	public double getMean(int axis) {
+		return statistics.getMean(axis);
+	}
+
+	/**
+	 * @param axis - index of the axis, 0 for x
+	 * @return deviation of the axis
+	 */
+	public double getDeviation(int axis) {
+		return Math.sqrt(statistics.getVariance(axis));
 	}
 
 }
@@ -0,0 +1,219 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of coordinates of recordings, so that repeated runs don't have
+ * to parse the CSV files again.
+ *
+ * The cache file starts with a header: magic number, version, length of the
+ * header and number of recordings, followed by a description of each
+ * recording (file name, size, time of the last modification, CRC32 checksum
+ * of its content, number of values and position of its block in the cache).
+ * Blocks of coordinates follow, one for each recording, stored as
+ * little-endian float64 and memory mapped when read.
+ *
+ * The cache is valid only for the same recordings. A recording is considered
+ * unchanged if it has the same size and either the same modification time or
+ * the same checksum (so e.g. a fresh checkout of the same data doesn't
+ * invalidate the cache).
+ */
+final class RecordingCache {
+
+	// "WACH" - walk authentication cache
+	private static final int MAGIC = 0x57414348;
+
+	// version of the format, increase with every change of the format
+	static final int VERSION = 2;
+
+	// magic, version, header length and recordings count
+	private static final int PREFIX_LENGTH = 4 * Integer.BYTES;
+
+	// bytes written at once
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private RecordingCache() {
+		throw new AssertionError("This is a noninstantiable utility class.");
+	}
+
+	/**
+	 * Reads coordinates of the given recordings from the cache.
+	 *
+	 * @param cacheFile cache file
+	 * @param files CSV files with recordings
+	 * @return coordinates of each recording (in the order of the files),
+	 * or null if the cache doesn't exist or it's not valid for the recordings
+	 * @throws IOException if the cache or the recordings cannot be read
+	 */
+	static List<double[]> read(Path cacheFile, List<File> files) throws IOException {
+		if (!Files.isRegularFile(cacheFile)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+			long cacheSize = channel.size();
+			if (cacheSize < PREFIX_LENGTH) {
+				return null;
+			}
+			ByteBuffer prefix = map(channel, 0, PREFIX_LENGTH);
+			if (prefix.getInt() != MAGIC || prefix.getInt() != VERSION) {
+				return null;
+			}
+			int headerLength = prefix.getInt();
+			if (headerLength < PREFIX_LENGTH || headerLength > cacheSize
+					|| prefix.getInt() != files.size()) {
+				return null;
+			}
+
+			ByteBuffer header = map(channel, PREFIX_LENGTH, headerLength - PREFIX_LENGTH);
+			List<double[]> recordings = new ArrayList<>(files.size());
+			for (File file : files) {
+				int nameLength = header.getInt();
+				if (nameLength < 0 || nameLength > header.remaining()) {
+					return null;
+				}
+				byte[] name = new byte[nameLength];
+				header.get(name);
+				long size = header.getLong();
+				long modified = header.getLong();
+				long checksum = header.getLong();
+				long values = header.getLong();
+				long offset = header.getLong();
+
+				if (!file.getName().equals(new String(name, StandardCharsets.UTF_8))
+						|| !isUnchanged(file.toPath(), size, modified, checksum)) {
+					return null;
+				}
+				if (values < 0 || values > Integer.MAX_VALUE || values % RecordingParser.COORDINATES != 0
+						|| offset < headerLength || offset + values * Double.BYTES > cacheSize) {
+					return null;
+				}
+
+				double[] block = new double[(int) values];
+				DoubleBuffer mapped = map(channel, offset, values * Double.BYTES).asDoubleBuffer();
+				mapped.get(block);
+				recordings.add(block);
+			}
+			return recordings;
+		} catch (BufferUnderflowException | IllegalArgumentException ex) {
+			// damaged header
+			return null;
+		}
+	}
+
+	/**
+	 * Writes coordinates of the recordings into the cache. The cache is
+	 * written into a temporary file first, so a reader never sees a partial
+	 * cache.
+	 *
+	 * @param cacheFile cache file
+	 * @param files CSV files with recordings
+	 * @param recordings coordinates of each recording, in the order of the
+	 * files
+	 * @throws IOException if the cache cannot be written
+	 */
+	static void write(Path cacheFile, List<File> files, List<double[]> recordings) throws IOException {
+		// header
+		List<byte[]> names = new ArrayList<>(files.size());
+		int headerLength = PREFIX_LENGTH;
+		for (File file : files) {
+			byte[] name = file.getName().getBytes(StandardCharsets.UTF_8);
+			names.add(name);
+			headerLength += Integer.BYTES + name.length + 5 * Long.BYTES;
+		}
+		// blocks are aligned to whole doubles
+		headerLength = (headerLength + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+
+		ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(headerLength).putInt(files.size());
+		long offset = headerLength;
+		for (int i = 0; i < files.size(); i++) {
+			Path file = files.get(i).toPath();
+			header.putInt(names.get(i).length).put(names.get(i));
+			header.putLong(Files.size(file));
+			header.putLong(Files.getLastModifiedTime(file).toMillis());
+			header.putLong(checksum(file));
+			header.putLong(recordings.get(i).length);
+			header.putLong(offset);
+			offset += (long) recordings.get(i).length * Double.BYTES;
+		}
+		header.rewind();
+
+		Path directory = cacheFile.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				writeFully(channel, header);
+				ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				for (double[] recording : recordings) {
+					for (double value : recording) {
+						if (!buffer.hasRemaining()) {
+							buffer.flip();
+							writeFully(channel, buffer);
+							buffer.clear();
+						}
+						buffer.putDouble(value);
+					}
+				}
+				buffer.flip();
+				writeFully(channel, buffer);
+			}
+			Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static boolean isUnchanged(Path file, long size, long modified, long checksum) throws IOException {
+		if (!Files.isRegularFile(file) || Files.size(file) != size) {
+			return false;
+		}
+		return Files.getLastModifiedTime(file).toMillis() == modified || checksum(file) == checksum;
+	}
+
+	/**
+	 * Computes CRC32 checksum of content of the file.
+	 */
+	static long checksum(Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+				crc.update(map(channel, position, Math.min(Integer.MAX_VALUE, size - position)));
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Maps part of the file as a little-endian buffer.
+	 */
+	private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Cannot map " + size + " bytes at once.");
+		}
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
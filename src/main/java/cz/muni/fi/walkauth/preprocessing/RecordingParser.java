@@ -0,0 +1,356 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parser of CSV files with accelerometer recordings. Every line of the file
+ * has four comma separated values: time and x, y and z coordinate. The time
+ * is skipped, the coordinates are stored into one primitive array.
+ *
+ * The file is split into chunks on line boundaries and each chunk is memory
+ * mapped on its own, so files larger than 2 GB (the limit of one mapping)
+ * are read as several regions. The chunks are processed in parallel in two
+ * passes: the first one counts lines of each chunk, which gives the position
+ * of the chunk in the result (and line numbers for error messages), and the
+ * second one parses the chunks straight into the shared result array.
+ *
+ * The numbers are parsed directly from the bytes, so no String is created for
+ * a regular line. Plain decimal numbers with up to 15 significant digits are
+ * computed exactly (the mantissa and the power of ten are both exact doubles,
+ * so one division rounds correctly); anything else falls back to
+ * Double.parseDouble, so the result is always the same as from
+ * Double.parseDouble.
+ */
+public final class RecordingParser {
+
+	// number of values stored for each line
+	public static final int COORDINATES = 3;
+
+	// nominal size of one chunk, the chunk ends at the end of the line
+	static final int CHUNK_SIZE = 1 << 23;
+
+	// bytes read at once when looking for the end of a line
+	private static final int SEARCH_BUFFER_SIZE = 1 << 12;
+
+	// more significant digits might not fit into an exact double
+	private static final int MAX_FAST_DIGITS = 15;
+
+	// powers of ten which are exact doubles
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private RecordingParser() {
+		throw new AssertionError("This is a noninstantiable utility class.");
+	}
+
+	/**
+	 * Parses the whole file in parallel in the common fork/join pool.
+	 *
+	 * @param file CSV file with the recording
+	 * @return x, y and z coordinates of each line, one line after another
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalStateException if a line doesn't have 4 values
+	 * @throws NumberFormatException if a coordinate is not a number
+	 */
+	public static double[] parse(Path file) throws IOException {
+		return parse(file, CHUNK_SIZE);
+	}
+
+	/**
+	 * Parses the whole file split into chunks of about the given size.
+	 */
+	static double[] parse(Path file, int chunkSize) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Chunk[] chunks = split(channel, chunkSize);
+			String fileName = file.toString();
+
+			// count lines and compute position of each chunk in the result
+			run(chunks, chunk -> chunk.lines = countLines(chunk.bytes));
+			long lines = 0;
+			for (Chunk chunk : chunks) {
+				chunk.firstLine = lines;
+				lines += chunk.lines;
+			}
+			if (lines * COORDINATES > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("File " + fileName + " has too many lines (" + lines + ").");
+			}
+
+			double[] values = new double[(int) lines * COORDINATES];
+			run(chunks, chunk -> parseLines(chunk.bytes, values, (int) chunk.firstLine * COORDINATES, fileName, chunk.firstLine));
+			return values;
+		}
+	}
+
+	/**
+	 * Part of the file which starts at the beginning of a line and ends after
+	 * the end of a line (or at the end of the file).
+	 */
+	private static final class Chunk {
+
+		private final MappedByteBuffer bytes;
+		private long lines;
+		private long firstLine;
+		// failure of the last action on this chunk
+		private RuntimeException error;
+
+		Chunk(MappedByteBuffer bytes) {
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Splits the file into chunks of about the given size, each ending by the
+	 * line separator (except the last one), and maps them into memory.
+	 */
+	private static Chunk[] split(FileChannel channel, int chunkSize) throws IOException {
+		long size = channel.size();
+		List<Chunk> chunks = new ArrayList<>();
+		ByteBuffer search = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+		long start = 0;
+		while (start < size) {
+			long end = (start + chunkSize < size) ? lineEnd(channel, start + chunkSize, search) : size;
+			if (end - start > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Line at byte " + start + " is longer than 2 GB.");
+			}
+			chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+			start = end;
+		}
+		return chunks.toArray(new Chunk[chunks.size()]);
+	}
+
+	/**
+	 * Finds the end of the line containing the byte before the given
+	 * position, i.e. the position after the next line separator, or the size
+	 * of the file if there is no other separator.
+	 */
+	private static long lineEnd(FileChannel channel, long position, ByteBuffer search) throws IOException {
+		long size = channel.size();
+		long blockStart = position - 1;
+		while (blockStart < size) {
+			search.clear();
+			int read = channel.read(search, blockStart);
+			if (read <= 0) {
+				return size;
+			}
+			for (int i = 0; i < read; i++) {
+				if (search.get(i) == '\n') {
+					return blockStart + i + 1;
+				}
+			}
+			blockStart += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Runs the action for every chunk in the common fork/join pool. If it
+	 * fails, the exception of the first failed chunk in the file is thrown,
+	 * so the error is the same as from parsing line after line.
+	 */
+	private static void run(Chunk[] chunks, ChunkAction action) {
+		if (chunks.length == 1) {
+			action.apply(chunks[0]);
+		} else if (chunks.length > 1) {
+			ForkJoinPool.commonPool().invoke(new ChunkTask(chunks, 0, chunks.length, action));
+			for (Chunk chunk : chunks) {
+				if (chunk.error != null) {
+					throw chunk.error;
+				}
+			}
+		}
+	}
+
+	private interface ChunkAction {
+
+		void apply(Chunk chunk);
+	}
+
+	/**
+	 * Task running an action for a range of chunks, split in halves.
+	 */
+	private static final class ChunkTask extends RecursiveAction {
+
+		private final Chunk[] chunks;
+		private final int from;
+		private final int to;
+		private final ChunkAction action;
+
+		ChunkTask(Chunk[] chunks, int from, int to, ChunkAction action) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				// the pool would replace the exception by a copy without
+				// the message, so it's kept for the caller
+				try {
+					action.apply(chunks[from]);
+				} catch (RuntimeException ex) {
+					chunks[from].error = ex;
+				}
+			} else {
+				int middle = (from + to) / 2;
+				invokeAll(new ChunkTask(chunks, from, middle, action), new ChunkTask(chunks, middle, to, action));
+			}
+		}
+	}
+
+	/**
+	 * Counts lines, including the last one without the line separator.
+	 */
+	static long countLines(ByteBuffer bytes) {
+		int end = bytes.limit();
+		long lines = 0;
+		for (int i = 0; i < end; i++) {
+			if (bytes.get(i) == '\n') {
+				lines++;
+			}
+		}
+		if (end > 0 && bytes.get(end - 1) != '\n') {
+			lines++;
+		}
+		return lines;
+	}
+
+	/**
+	 * Parses all lines of the buffer.
+	 *
+	 * @param bytes lines of the file
+	 * @param values array for the coordinates
+	 * @param offset index in values for the first coordinate
+	 * @param fileName file name for error messages
+	 * @param firstLine number of lines before the buffer
+	 */
+	static void parseLines(ByteBuffer bytes, double[] values, int offset, String fileName, long firstLine) {
+		int end = bytes.limit();
+		int lineStart = 0;
+		long lineNumber = firstLine;
+		for (int i = 0; i < end; i++) {
+			if (bytes.get(i) == '\n') {
+				lineNumber++;
+				parseLine(bytes, lineStart, i, values, offset, fileName, lineNumber);
+				offset += COORDINATES;
+				lineStart = i + 1;
+			}
+		}
+		// last line without the line separator
+		if (lineStart < end) {
+			lineNumber++;
+			parseLine(bytes, lineStart, end, values, offset, fileName, lineNumber);
+		}
+	}
+
+	/**
+	 * Parses one line without the line separator and stores its coordinates.
+	 */
+	static void parseLine(ByteBuffer bytes, int from, int to, double[] values, int offset, String fileName, long lineNumber) {
+		// tolerate Windows line separators
+		if (to > from && bytes.get(to - 1) == '\r') {
+			to--;
+		}
+
+		// the first value (0) is time - we do not need it
+		int fieldStart = from;
+		int field = 0;
+		for (int i = from; i <= to; i++) {
+			if (i == to || bytes.get(i) == ',') {
+				if (field > COORDINATES) {
+					// too many values
+					field++;
+					break;
+				}
+				if (field > 0) {
+					values[offset + field - 1] = parseDouble(bytes, fieldStart, i, fileName, lineNumber);
+				}
+				field++;
+				fieldStart = i + 1;
+			}
+		}
+		// check if there are 3 coordinates
+		if (field != COORDINATES + 1) {
+			throw new IllegalStateException("The entry " + toString(bytes, from, to) + " on line " + lineNumber
+					+ " of file " + fileName + " has more coordinates than 3");
+		}
+	}
+
+	/**
+	 * Parses decimal number from the bytes.
+	 */
+	static double parseDouble(ByteBuffer bytes, int from, int to, String fileName, long lineNumber) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (bytes.get(i) == '-' || bytes.get(i) == '+')) {
+			negative = bytes.get(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		boolean anyDigit = false;
+		int digits = 0;
+		int exponent = 0;
+		boolean fraction = false;
+		for (; i < to; i++) {
+			byte b = bytes.get(i);
+			if (b >= '0' && b <= '9') {
+				anyDigit = true;
+				if (mantissa != 0 || b != '0') {
+					digits++;
+				}
+				if (digits > MAX_FAST_DIGITS) {
+					return parseSlowly(bytes, from, to, fileName, lineNumber);
+				}
+				mantissa = 10 * mantissa + (b - '0');
+				if (fraction) {
+					exponent--;
+				}
+			} else if (b == '.' && !fraction) {
+				fraction = true;
+			} else {
+				// exponent, whitespace, special values or an error
+				return parseSlowly(bytes, from, to, fileName, lineNumber);
+			}
+		}
+		if (!anyDigit || -exponent >= POWERS_OF_TEN.length) {
+			return parseSlowly(bytes, from, to, fileName, lineNumber);
+		}
+
+		double value = mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	private static double parseSlowly(ByteBuffer bytes, int from, int to, String fileName, long lineNumber) {
+		String number = toString(bytes, from, to);
+		try {
+			return Double.parseDouble(number);
+		} catch (NumberFormatException ex) {
+			NumberFormatException withLine = new NumberFormatException("Invalid number " + number
+					+ " on line " + lineNumber + " of file " + fileName);
+			withLine.initCause(ex);
+			throw withLine;
+		}
+	}
+
+	private static String toString(ByteBuffer bytes, int from, int to) {
+		byte[] array = new byte[to - from];
+		for (int i = from; i < to; i++) {
+			array[i - from] = bytes.get(i);
+		}
+		return new String(array, StandardCharsets.US_ASCII);
+	}
+}
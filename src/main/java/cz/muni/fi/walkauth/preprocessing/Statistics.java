@@ -0,0 +1,133 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+/**
+ * Mean and variance of values of several channels (e.g. axes x, y and z),
+ * computed in one pass by Welford's algorithm.
+ *
+ * Statistics of different parts of data (computed by different threads, or
+ * of recordings added later) can be merged by the algorithm of Chan et al.,
+ * which gives the same result as computing them from all the data at once,
+ * up to rounding. Statistics of all channels together are merged from
+ * statistics of the single channels, so they cost nothing extra.
+ */
+public final class Statistics {
+
+	// number of values, mean and sum of squared differences from the mean
+	// of each channel
+	private final long[] counts;
+	private final double[] means;
+	private final double[] squares;
+
+	/**
+	 * Creates empty statistics.
+	 *
+	 * @param channels number of channels
+	 */
+	public Statistics(int channels) {
+		if (channels < 1) {
+			throw new IllegalArgumentException("Number of channels must be positive, but it is " + channels + ".");
+		}
+		counts = new long[channels];
+		means = new double[channels];
+		squares = new double[channels];
+	}
+
+	/**
+	 * @return number of channels
+	 */
+	public int getChannels() {
+		return counts.length;
+	}
+
+	/**
+	 * Adds value of the channel.
+	 *
+	 * @param value value
+	 * @param channel index of the channel
+	 */
+	public void add(double value, int channel) {
+		long count = ++counts[channel];
+		double difference = value - means[channel];
+		means[channel] += difference / count;
+		squares[channel] += difference * (value - means[channel]);
+	}
+
+	/**
+	 * Adds values of the array, whose channels alternate: the first value
+	 * belongs to channel 0, the second one to channel 1 and so on.
+	 *
+	 * @param values values
+	 * @param from index of the first value (channel 0)
+	 * @param to index after the last value
+	 */
+	public void add(double[] values, int from, int to) {
+		int channels = counts.length;
+		for (int i = from, channel = 0; i < to; i++) {
+			add(values[i], channel);
+			if (++channel == channels) {
+				channel = 0;
+			}
+		}
+	}
+
+	/**
+	 * Adds statistics of other values of the same channels.
+	 *
+	 * @param other statistics to add, not changed
+	 */
+	public void merge(Statistics other) {
+		if (other.counts.length != counts.length) {
+			throw new IllegalArgumentException("Statistics of " + other.counts.length
+					+ " channels cannot be merged into statistics of " + counts.length + " channels.");
+		}
+		for (int c = 0; c < counts.length; c++) {
+			merge(c, other.counts[c], other.means[c], other.squares[c]);
+		}
+	}
+
+	private void merge(int channel, long otherCount, double otherMean, double otherSquares) {
+		if (otherCount == 0) {
+			return;
+		}
+		long count = counts[channel] + otherCount;
+		double difference = otherMean - means[channel];
+		squares[channel] += otherSquares + difference * difference * ((double) counts[channel] * otherCount / count);
+		means[channel] += difference * otherCount / count;
+		counts[channel] = count;
+	}
+
+	/**
+	 * @param channel index of the channel
+	 * @return number of values of the channel
+	 */
+	public long getCount(int channel) {
+		return counts[channel];
+	}
+
+	/**
+	 * @param channel index of the channel
+	 * @return mean of the channel, NaN if it has no values
+	 */
+	public double getMean(int channel) {
+		return (counts[channel] == 0) ? Double.NaN : means[channel];
+	}
+
+	/**
+	 * @param channel index of the channel
+	 * @return variance (not corrected) of the channel, NaN if it has no values
+	 */
+	public double getVariance(int channel) {
+		return squares[channel] / counts[channel];
+	}
+
+	/**
+	 * @return statistics of all channels together
+	 */
+	public Statistics total() {
+		Statistics total = new Statistics(1);
+		for (int c = 0; c < counts.length; c++) {
+			total.merge(0, counts[c], means[c], squares[c]);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,62 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of evaluation of weights in background.
+ */
+public class AsyncEvaluatorTest {
+
+    /**
+     * Snapshots submitted faster than they are evaluated are coalesced, but
+     * the last one is always evaluated, and later changes of the weights
+     * don't affect it.
+     */
+    @Test
+    public void testLastSnapshotIsEvaluated() {
+        Matrix[] weights = {new Matrix(new double[][]{{0.0, 1.0}})};
+        Sample[] samples = new Sample[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new Sample(i % 2 == 0, new double[]{i % 7 - 3});
+        }
+        int steps = 200;
+
+        AsyncEvaluator evaluator;
+        try (ParallelEvaluation evaluation = new ParallelEvaluation(1)) {
+            evaluator = new AsyncEvaluator(evaluation, weights, Dataset.of(samples), Dataset.of(samples));
+            assertEquals(evaluator.getLatest().getStep(), 0);
+            for (int step = 1; step <= steps; step++) {
+                weights[0].set(0, 0, step / 100.0);
+                evaluator.submit(step, weights);
+            }
+            double finalError = Evaluation.computeError(new NeuralNetwork(weights), samples);
+            weights[0].set(0, 0, -10);
+            evaluator.close();
+
+            assertEquals(evaluator.getLatest().getStep(), steps);
+            assertEquals(evaluator.getLatest().getValidation().getError(), finalError, 1e-9);
+            assertTrue(evaluator.getEvaluatedCount() <= steps + 1);
+        }
+    }
+
+    @Test
+    public void testAwaitEvaluation() {
+        Matrix[] weights = {new Matrix(new double[][]{{0.0, 1.0}})};
+        Sample[] samples = {new Sample(true, new double[]{1}), new Sample(false, new double[]{-1})};
+
+        try (ParallelEvaluation evaluation = new ParallelEvaluation(1);
+                AsyncEvaluator evaluator = new AsyncEvaluator(evaluation, weights, Dataset.of(samples), Dataset.of(samples))) {
+            for (int step = 1; step <= 20; step++) {
+                weights[0].set(0, 0, step / 10.0);
+                evaluator.submit(step, weights);
+                evaluator.await();
+
+                assertEquals(evaluator.getLatest().getStep(), step);
+                assertEquals(evaluator.getEvaluatedCount(), step + 1);
+            }
+        }
+    }
+}
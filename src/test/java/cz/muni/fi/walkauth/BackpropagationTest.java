@@ -303,6 +303,55 @@ public class BackpropagationTest {
         assertMatrixListsAlmostEqual(backpropGradient, expectedGradient);
     }    
     
+    /**
+     * Gradient computed by several threads matches the sequential one and
+     * doesn't change between runs.
+     */
+    @Test
+    public void testParallelBackpropagation() {
+        NeuralNetwork neuralNetwork = NeuralNetworkLearning.initializeWeights(new NeuralNetwork(3, 4, 1));
+        Sample[] data = new Sample[37];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new Sample(i % 3 == 0, new double[]{Math.sin(i), Math.cos(i), i / 37.0});
+        }
+        Matrix[] expectedGradient = NeuralNetworkLearning.backpropagation(neuralNetwork, data);
+
+        try (ParallelBackpropagation backpropagation = new ParallelBackpropagation(neuralNetwork, 3)) {
+            Matrix[] gradient = backpropagation.computeGradient(neuralNetwork, data);
+            assertMatrixListsAlmostEqual(gradient, expectedGradient);
+
+            Matrix[] firstRun = new Matrix[gradient.length];
+            for (int l = 0; l < gradient.length; l++) {
+                firstRun[l] = gradient[l].copy();
+            }
+            assertEquals(backpropagation.computeGradient(neuralNetwork, data), firstRun,
+                    "Parallel gradient differs between runs.");
+        }
+    }
+
+    /**
+     * Gradient of samples selected by indices matches gradient of the same
+     * samples given directly.
+     */
+    @Test
+    public void testBackpropagationOfSelectedSamples() {
+        NeuralNetwork neuralNetwork = NeuralNetworkLearning.initializeWeights(new NeuralNetwork(3, 4, 1));
+        Sample[] data = new Sample[10];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new Sample(i % 2 == 0, new double[]{Math.sin(i), Math.cos(i), i / 10.0});
+        }
+        int[] order = {7, 2, 9, 0, 4, 1, 8};
+        Sample[] selected = {data[9], data[0], data[4], data[1]};
+        Matrix[] expectedGradient = NeuralNetworkLearning.backpropagation(neuralNetwork, selected);
+
+        for (int threads = 1; threads <= 3; threads++) {
+            try (ParallelBackpropagation backpropagation = new ParallelBackpropagation(neuralNetwork, threads)) {
+                Matrix[] gradient = backpropagation.computeGradient(neuralNetwork, data, order, 2, 6);
+                assertMatrixListsAlmostEqual(gradient, expectedGradient);
+            }
+        }
+    }
+
     /**
      * Test for normalized gradient which should be zero
      */
@@ -1,5 +1,6 @@
 package cz.muni.fi.walkauth;
 
+import cz.muni.fi.walkauth.preprocessing.Dataset;
 import cz.muni.fi.walkauth.preprocessing.Sample;
 import static org.mockito.Matchers.any;
 import static org.testng.Assert.*;
@@ -39,6 +40,10 @@ public class EvaluationTest {
         when(halfPositiveNeuralNetwork.computeOutput(any(Matrix.class))).thenReturn(0.5);
         when(neutralNeuralNetwork.computeOutput(any(Matrix.class))).thenReturn(0.0);
         when(negativeNeuralNetwork.computeOutput(any(Matrix.class))).thenReturn(-1.0);
+        when(positiveNeuralNetwork.computeOutput(any(double[].class))).thenReturn(1.0);
+        when(halfPositiveNeuralNetwork.computeOutput(any(double[].class))).thenReturn(0.5);
+        when(neutralNeuralNetwork.computeOutput(any(double[].class))).thenReturn(0.0);
+        when(negativeNeuralNetwork.computeOutput(any(double[].class))).thenReturn(-1.0);
     }
 
     /**
@@ -420,4 +425,85 @@ public class EvaluationTest {
         assertEquals(result5, 0.75, EPSILON);
         assertEquals(result6, 0.3333333334, EPSILON);
     }
+
+    /**
+     * Report of no samples has the same values as the separate metrics.
+     */
+    @Test
+    public void testEvaluateNoSamples() {
+        EvaluationReport report = Evaluation.evaluate(NeuralNetwork.IDENTITY, new Sample[]{});
+
+        assertEquals(report.getSampleCount(), 0);
+        assertEquals(report.getError(), 0.0, EPSILON);
+        assertEquals(report.getRMSE(), 0.0, EPSILON);
+        assertEquals(report.getAccuracy(), 0.0, EPSILON);
+        assertEquals(report.getPrecision(), 1.0, EPSILON);
+        assertEquals(report.getRecall(), 1.0, EPSILON);
+        assertEquals(report.getF1(), 1.0, EPSILON);
+    }
+
+    /**
+     * Report from one pass has the confusion matrix of the samples and the
+     * same metrics as the separate methods.
+     */
+    @Test
+    public void testEvaluateMatchesSeparateMetrics() {
+        Sample sampleTP = new Sample(true, new double[]{0.5});
+        Sample sampleTN = new Sample(false, new double[]{-0.5});
+        Sample sampleFP = new Sample(false, new double[]{0.5});
+        Sample sampleFN = new Sample(true, new double[]{-0.5});
+        Sample[] samples = {sampleTP, sampleTN, sampleFP, sampleFN, sampleTP, sampleTN, sampleTP};
+        NeuralNetwork network = NeuralNetwork.IDENTITY;
+
+        EvaluationReport report = Evaluation.evaluate(network, samples);
+
+        assertEquals(report.getConfusionMatrix(), new int[][]{{3, 1}, {1, 2}});
+        assertEquals(report.getSampleCount(), samples.length);
+        assertEquals(report.getError(), Evaluation.computeError(network, samples));
+        assertEquals(report.getRMSE(), Evaluation.computeRMSE(network, samples));
+        assertEquals(report.getAccuracy(), 5.0 / 7, EPSILON);
+        assertEquals(report.getPrecision(), 0.75, EPSILON);
+        assertEquals(report.getRecall(), 0.75, EPSILON);
+        assertEquals(report.getF1(), 0.75, EPSILON);
+    }
+
+    /**
+     * Parallel evaluation in batches gives the same report as the sequential
+     * one, and exactly the same report for any number of threads.
+     */
+    @Test
+    public void testParallelEvaluation() {
+        NeuralNetwork network = NeuralNetworkLearning.initializeWeights(new NeuralNetwork(3, 4, 1));
+        Sample[] samples = new Sample[3 * ParallelEvaluation.CHUNK_SIZE + 17];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new Sample(i % 3 == 0, new double[]{Math.sin(i), Math.cos(i), i % 5 - 2});
+        }
+        EvaluationReport expected = Evaluation.evaluate(network, samples);
+
+        // a shuffled subset of a data set is read through its indices
+        int[] reversed = new int[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            reversed[i] = samples.length - 1 - i;
+        }
+        EvaluationReport fromDataset = Evaluation.evaluate(network, Dataset.of(samples).subset(reversed));
+        assertEquals(fromDataset.getConfusionMatrix(), expected.getConfusionMatrix());
+        assertEquals(fromDataset.getError(), expected.getError(), 1e-9);
+
+        EvaluationReport first = null;
+        for (int threads = 1; threads <= 4; threads++) {
+            try (ParallelEvaluation evaluation = new ParallelEvaluation(threads)) {
+                EvaluationReport report = evaluation.evaluate(network, samples);
+                assertEquals(report.getConfusionMatrix(), expected.getConfusionMatrix());
+                assertEquals(report.getError(), expected.getError(), 1e-9);
+                if (first == null) {
+                    first = report;
+                }
+                assertEquals(report.getError(), first.getError(), "Error depends on number of threads.");
+            }
+        }
+
+        try (ParallelEvaluation evaluation = new ParallelEvaluation(2)) {
+            assertEquals(evaluation.evaluate(network, new Sample[]{}).getSampleCount(), 0);
+        }
+    }
 }
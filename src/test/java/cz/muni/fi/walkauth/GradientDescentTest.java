@@ -1,6 +1,7 @@
 package cz.muni.fi.walkauth;
 
 import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.util.SplittableRandom;
 import static org.testng.Assert.*;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -96,4 +97,70 @@ public class GradientDescentTest {
         // test hidden neuron -> output neuron
         assertTrue(trained.getNeuronWeight(2, 0, 1) < 1, "Weight should have dropped.");
     }
+
+    @Test
+    public void testMiniBatchLearning() {
+        Sample s = new Sample(true, new double[]{0});
+        samples = new Sample[]{s, s, s};
+        validationSamples = samples;
+
+        TrainingOptions options = new TrainingOptions();
+        options.setBatchSize(1);
+
+        NeuralNetwork trained = NeuralNetworkLearning.gradienDescent(id, samples, validationSamples, 0.0, (Integer, Double) -> 0.1, 1, options);
+        // one epoch makes a step of size 0.1 for each of three mini-batches
+        assertEquals(trained.getNeuronWeight(1, 0, 0), 0.3, 1e-9, "Bias should have risen three times.");
+        assertEquals(trained.getNeuronWeight(1, 0, 1), 1.0, "Weight of zero input should not change.");
+    }
+
+    /**
+     * Training with the same seed gives the same weights, although the
+     * initial weights and the order of mini-batches are random.
+     */
+    @Test
+    public void testSeededTraining() {
+        samples = new Sample[]{
+            new Sample(true, new double[]{1, 0}),
+            new Sample(false, new double[]{0, 1}),
+            new Sample(true, new double[]{1, 1}),
+            new Sample(false, new double[]{0, 0})
+        };
+
+        Matrix[] first = trainWithSeed(42).getWeights();
+        Matrix[] second = trainWithSeed(42).getWeights();
+
+        assertEquals(first, second);
+    }
+
+    private NeuralNetwork trainWithSeed(long seed) {
+        TrainingOptions options = new TrainingOptions();
+        options.setBatchSize(1);
+        options.setRandom(new SplittableRandom(seed));
+        options.setReproducible(true);
+        return NeuralNetworkLearning.trainNeuralNetwork(new int[]{2, 3, 1}, samples, samples, 0.0, (Integer, Double) -> 0.1, 5, options);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeBatchSize() {
+        new TrainingOptions().setBatchSize(-1);
+    }
+
+    @Test
+    public void testEarlyStoppingReturnsBestWeights() {
+        // training pushes the output up, which only makes validation worse
+        samples = new Sample[]{new Sample(true, new double[]{0})};
+        validationSamples = new Sample[]{new Sample(false, new double[]{0})};
+
+        TrainingOptions options = new TrainingOptions();
+        options.setEvaluationInterval(2);
+        options.setPatience(4);
+
+        NeuralNetwork trained = NeuralNetworkLearning.gradienDescent(id, samples, validationSamples, 0.0, (Integer, Double) -> 0.1, 1000, options);
+        assertEquals(trained.getWeights(), id.getWeights(), "Initial weights have the lowest validation error.");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroEvaluationInterval() {
+        new TrainingOptions().setEvaluationInterval(0);
+    }
 }
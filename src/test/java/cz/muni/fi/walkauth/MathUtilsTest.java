@@ -20,5 +20,43 @@ public class MathUtilsTest {
 		double error = MathUtils.squareError(predictedValues, actualValues);
 		assertEquals(expError, error, 0.00000001);
 	}
-	
+
+	/**
+	 * Accumulator gives the same error and RMSE as the methods for arrays.
+	 */
+	@Test
+	public void testSquareErrorAccumulator() {
+		double[] predictedValues = {1.1, 1.2, -0.8};
+		double[] actualValues = {1.3, 1.2, -0.85};
+		MathUtils.SquareErrorAccumulator accumulator = new MathUtils.SquareErrorAccumulator();
+		for (int i = 0; i < predictedValues.length; i++) {
+			accumulator.add(predictedValues[i], actualValues[i]);
+		}
+		assertEquals(accumulator.getCount(), 3);
+		assertEquals(accumulator.squareError(), MathUtils.squareError(predictedValues, actualValues), 0.00000001);
+		assertEquals(accumulator.rmse(), MathUtils.rmse(predictedValues, actualValues), 0.00000001);
+		assertEquals(new MathUtils.SquareErrorAccumulator().rmse(), 0.0);
+	}
+
+	/**
+	 * Merged parts give the same sum as one accumulator, and small values are
+	 * not lost next to a large one.
+	 */
+	@Test
+	public void testSquareErrorAccumulatorMerge() {
+		MathUtils.SquareErrorAccumulator whole = new MathUtils.SquareErrorAccumulator();
+		MathUtils.SquareErrorAccumulator first = new MathUtils.SquareErrorAccumulator();
+		MathUtils.SquareErrorAccumulator second = new MathUtils.SquareErrorAccumulator();
+		whole.add(1e8, 0);
+		first.add(1e8, 0);
+		for (int i = 0; i < 1000; i++) {
+			whole.add(0.1, 0);
+			second.add(0.1, 0);
+		}
+		first.merge(second);
+
+		assertEquals(first.getCount(), 1001);
+		assertEquals(whole.getSumOfSquares(), 1e16 + 10.0);
+		assertEquals(first.getSumOfSquares(), 1e16 + 10.0);
+	}
 }
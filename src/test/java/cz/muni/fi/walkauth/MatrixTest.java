@@ -74,6 +74,33 @@ public class MatrixTest {
 		}
 	}
 
+	/**
+	 * Test of multiply method for all shapes the kernel distinguishes
+	 * (matrix-vector, vector-matrix and general with incomplete blocks).
+	 */
+	@Test
+	public void testMultiplyShapes() {
+		int[][] shapes = {{30, 301, 1}, {1, 31, 7}, {7, 70, 300}, {5, 3, 2}, {1, 1, 1}};
+		for (int[] shape : shapes) {
+			Matrix a = Matrix.random(shape[0], shape[1]);
+			Matrix b = Matrix.random(shape[1], shape[2]);
+			Matrix product = a.multiply(b);
+
+			assertEquals(product.getRowCount(), shape[0]);
+			assertEquals(product.getColCount(), shape[2]);
+			for (int i = 0; i < shape[0]; i++) {
+				for (int j = 0; j < shape[2]; j++) {
+					double expected = 0.0;
+					for (int k = 0; k < shape[1]; k++) {
+						expected += a.get(i, k) * b.get(k, j);
+					}
+					assertEquals(product.get(i, j), expected, 0.0000000001,
+						"Unexpected value on row " + i + " column " + j + ".");
+				}
+			}
+		}
+	}
+
 	/**
 	 * Test of multiply method, of class Matrix.
 	 */
@@ -82,4 +109,138 @@ public class MatrixTest {
 		m1.multiply(m1);
 	}
 
+	/**
+	 * Parallel multiplication of large matrices gives the same result as the
+	 * sequential one.
+	 */
+	@Test
+	public void testParallelMultiply() {
+		Matrix a = Matrix.random(61, 301);
+		Matrix b = Matrix.random(301, 100);
+		Matrix expected = a.multiply(b);
+
+		Matrix.setParallelism(4);
+		try {
+			assertEquals(Matrix.getParallelism(), 4);
+			assertEquals(a.multiply(b), expected);
+		} finally {
+			Matrix.setParallelism(1);
+		}
+	}
+
+	/**
+	 * Test of multiplyInto method with all combinations of transpositions.
+	 */
+	@Test
+	public void testMultiplyInto() {
+		Matrix a = Matrix.random(4, 6);
+		Matrix b = Matrix.random(6, 5);
+		Matrix expected = a.multiply(b);
+		Matrix dest = Matrix.constant(4, 5, 42.0);
+
+		Matrix.multiplyInto(a, b, dest);
+		assertMatricesAlmostEqual(dest, expected);
+		Matrix.multiplyInto(a.transpose(), true, b, false, dest);
+		assertMatricesAlmostEqual(dest, expected);
+		Matrix.multiplyInto(a, false, b.transpose(), true, dest);
+		assertMatricesAlmostEqual(dest, expected);
+		Matrix.multiplyInto(a.transpose(), true, b.transpose(), true, dest);
+		assertMatricesAlmostEqual(dest, expected);
+	}
+
+	/**
+	 * Test of multiplyInto method, the destination must have product dimensions.
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMultiplyIntoWrongDestination() {
+		Matrix.multiplyInto(m1, m1.transpose(), new Matrix(2, 2));
+	}
+
+	/**
+	 * Test of in-place operations, of class Matrix.
+	 */
+	@Test
+	public void testInPlaceOperations() {
+		Matrix other = new Matrix(new double[][]{{1.0, 0.0}, {-1.0, 2.0}, {0.5, 0.5}});
+		Matrix expected = m1.add(other.multiplyByScalar(-2.0)).multiplyByScalar(3.0);
+
+		Matrix result = m1.copy();
+		assertSame(result.addScaled(other, -2.0).scaleInPlace(3.0), result);
+		assertMatricesAlmostEqual(result, expected);
+
+		result.copyFrom(m1).addInPlace(other);
+		assertMatricesAlmostEqual(result, m1.add(other));
+		// the original matrix is untouched
+		assertEquals(m1.get(0, 0), 1.1, 0.000001);
+	}
+
+	private static void assertMatricesAlmostEqual(Matrix actual, Matrix expected) {
+		assertEquals(actual.getRowCount(), expected.getRowCount());
+		assertEquals(actual.getColCount(), expected.getColCount());
+		for (int i = 0; i < actual.getRowCount(); i++) {
+			for (int j = 0; j < actual.getColCount(); j++) {
+				assertEquals(actual.get(i, j), expected.get(i, j), 0.0000000001,
+					"Unexpected value on row " + i + " column " + j + ".");
+			}
+		}
+	}
+
+	/**
+	 * Test of getValues method, of class Matrix.
+	 */
+	@Test
+	public void testGetValues() {
+		double[][] values = m1.getValues();
+		assertEquals(values.length, 3);
+		assertEquals(values[1][0], 2.3, 0.000001);
+		assertEquals(values[2][1], -0.2, 0.000001);
+
+		// returned array is a copy
+		values[0][0] = 42.0;
+		assertEquals(m1.get(0, 0), 1.1, 0.000001);
+	}
+
+	/**
+	 * Test of transpose method, of class Matrix.
+	 */
+	@Test
+	public void testTranspose() {
+		Matrix transposed = m1.transpose();
+		assertEquals(transposed.getRowCount(), 2);
+		assertEquals(transposed.getColCount(), 3);
+		for (int i = 0; i < m1.getRowCount(); i++) {
+			for (int j = 0; j < m1.getColCount(); j++) {
+				assertEquals(transposed.get(j, i), m1.get(i, j), 0.000001);
+			}
+		}
+	}
+
+	/**
+	 * Test of columnVector and rowVector factories, of class Matrix.
+	 */
+	@Test
+	public void testVectors() {
+		double[] values = {1.0, 2.0, 3.0};
+		Matrix column = Matrix.columnVector(values);
+		Matrix row = Matrix.rowVector(values);
+
+		assertEquals(column.getRowCount(), 3);
+		assertEquals(column.getColCount(), 1);
+		assertEquals(row.getRowCount(), 1);
+		assertEquals(row.getColCount(), 3);
+		assertEquals(column.get(2, 0), 3.0, 0.000001);
+		assertEquals(row.transpose(), column);
+	}
+
+	/**
+	 * Matrices with same elements but different shapes are not equal.
+	 */
+	@Test
+	public void testEqualsDifferentShape() {
+		double[] values = {1.0, 2.0, 3.0, 4.0};
+		Matrix square = new Matrix(new double[][]{{1.0, 2.0}, {3.0, 4.0}});
+		assertEquals(square, new Matrix(new double[][]{{1.0, 2.0}, {3.0, 4.0}}));
+		assertNotEquals(square, Matrix.rowVector(values));
+	}
+
 }
@@ -1,6 +1,7 @@
 package cz.muni.fi.walkauth;
 
 import java.util.Arrays;
+import java.util.SplittableRandom;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -54,6 +55,18 @@ public class NeuralNetworkLearningTest {
 		}
 	}
 	
+	@Test
+	public void testInitWeightsWithSeed() {
+		NeuralNetwork network = new NeuralNetwork(10, 5, 1);
+
+		NeuralNetwork first = NeuralNetworkLearning.initializeWeights(network, new SplittableRandom(7));
+		NeuralNetwork second = NeuralNetworkLearning.initializeWeights(network, new SplittableRandom(7));
+		NeuralNetwork third = NeuralNetworkLearning.initializeWeights(network, new SplittableRandom(8));
+
+		Assert.assertEquals(first.getWeights(), second.getWeights());
+		Assert.assertNotEquals(first.getWeights(), third.getWeights());
+	}
+
 	private void assertInInterval(double range, double value, String msg) {
 		Assert.assertTrue(value <= range, msg);
 		Assert.assertTrue(value >= -range, msg);
@@ -7,7 +7,12 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import static java.lang.Math.abs;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Assert;
 
 /**
@@ -167,6 +172,45 @@ public class NeuralNetworkNGTest {
         }
     }
 
+    /**
+     * Test of computeOutputs method with a batch of samples.
+     */
+    @Test
+    public void testComputeOutputsBatch() {
+        NeuralNetwork instance = new NeuralNetwork(layers);
+        Matrix batch = new Matrix(
+                new double[][]{
+                    {1, 1.5, 1},
+                    {0, 1.5, 0}
+                }
+        );
+        Matrix result = instance.computeOutputs(batch);
+        assertEquals(result.getRowCount(), 2, "Output has incorrect number of neurons.");
+        assertEquals(result.getColCount(), 3, "Output has incorrect number of samples.");
+
+        for (int i = 0; i < result.getRowCount(); i++) {
+            assertEquals(result.get(i, 0), expectedOutput1.get(i, 0), epsilon);
+            assertEquals(result.get(i, 1), expectedOutput2.get(i, 0), epsilon);
+            assertEquals(result.get(i, 2), expectedOutput1.get(i, 0), epsilon);
+        }
+    }
+
+    /**
+     * Batch computation gives the same outputs as one sample at a time.
+     */
+    @Test
+    public void testComputeOutputBatch() {
+        NeuralNetwork instance = new NeuralNetwork(layers3);
+        double[][] samples = {{1, 0}, {1.5, 1.5}, {-0.5, 2}};
+        double[] result = instance.computeOutput(samples);
+
+        assertEquals(result.length, samples.length);
+        for (int s = 0; s < samples.length; s++) {
+            assertEquals(result[s], instance.computeOutput(samples[s]), epsilon);
+        }
+        assertEquals(instance.computeOutput(new double[0][]).length, 0);
+    }
+
     @Test(expectedExceptions = UnsupportedOperationException.class)
     public void testSingleOutputFail() {
         NeuralNetwork n = new NeuralNetwork(layers);
@@ -180,4 +224,68 @@ public class NeuralNetworkNGTest {
         assertTrue(abs(result - expectedOutput3) < epsilon, "Forward computation did not ended with expected result.");
     }
 
+    @Test
+    public void testComputeOutputFromArray() {
+        NeuralNetwork instance = new NeuralNetwork(layers3);
+        double result = instance.computeOutput(new double[]{1, 0});
+        assertTrue(abs(result - expectedOutput3) < epsilon, "Forward computation did not ended with expected result.");
+
+        // neuron values are kept with bias as the first element
+        assertEquals(instance.getNeuronValue(0, 0), 1.0);
+        assertEquals(instance.getNeuronValue(0, 1), 1.0);
+        assertEquals(instance.getNeuronValue(0, 2), 0.0);
+        assertEquals(instance.getNeuronValue(3, 1), result);
+    }
+
+    @Test
+    public void testForwardWithContext() {
+        NeuralNetwork instance = new NeuralNetwork(layers);
+        InferenceContext context1 = instance.createInferenceContext();
+        InferenceContext context2 = instance.createInferenceContext();
+
+        instance.forward(new double[]{1, 0}, context1);
+        instance.forward(new double[]{1.5, 1.5}, context2);
+
+        // each context keeps values of its own computation
+        for (int i = 0; i < expectedOutput1.getRowCount(); i++) {
+            assertEquals(context1.getNeuronValue(2, i + 1), expectedOutput1.get(i, 0), epsilon);
+            assertEquals(context2.getNeuronValue(2, i + 1), expectedOutput2.get(i, 0), epsilon);
+        }
+    }
+
+    @Test
+    public void testConcurrentComputeOutput() throws Exception {
+        final NeuralNetwork instance = new NeuralNetwork(layers3);
+        final double expectedOutput = instance.computeOutput(new double[]{1.5, 1.5});
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final boolean firstInput = t % 2 == 0;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        double output = firstInput
+                                ? instance.computeOutput(new double[]{1, 0})
+                                : instance.computeOutput(new double[]{1.5, 1.5});
+                        if (abs(output - (firstInput ? expectedOutput3 : expectedOutput)) > epsilon) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(), "Concurrent computation returned unexpected result.");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testComputeOutputWrongInputSize() {
+        NeuralNetwork instance = new NeuralNetwork(layers3);
+        instance.computeOutput(new double[]{1, 0, 0});
+    }
+
 }
@@ -0,0 +1,225 @@
+package cz.muni.fi.walkauth;
+
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+import static org.testng.Assert.*;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of the rules for updating weights.
+ */
+public class OptimizerTest {
+
+    @DataProvider
+    public Object[][] optimizersWithSpeed() {
+        return new Object[][]{
+            {new NormalizedGradientDescent(), 0.1},
+            {new MomentumOptimizer(), 0.01},
+            {new MomentumOptimizer(MomentumOptimizer.DEFAULT_MOMENTUM, true), 0.01},
+            {new RMSPropOptimizer(), 0.1},
+            {new AdamOptimizer(), 0.1},
+            {new RpropOptimizer(), 0.0},
+            {new LbfgsOptimizer(), 0.0}
+        };
+    }
+
+    @DataProvider
+    public Object[][] optimizers() {
+        return new Object[][]{
+            {new NormalizedGradientDescent()},
+            {new MomentumOptimizer()},
+            {new MomentumOptimizer(MomentumOptimizer.DEFAULT_MOMENTUM, true)},
+            {new RMSPropOptimizer()},
+            {new AdamOptimizer()},
+            {new RpropOptimizer()},
+            {new LbfgsOptimizer()}
+        };
+    }
+
+    /**
+     * Every optimizer finds minimum of the quadratic function
+     * (w1 - 1)^2 + 10 * (w2 + 2)^2 / 2.
+     */
+    @Test(dataProvider = "optimizersWithSpeed")
+    public void testMinimizesQuadraticFunction(Optimizer optimizer, double speed) {
+        Matrix[] weights = {new Matrix(new double[][]{{0.0, 0.0}})};
+        Matrix[] gradient = {Matrix.zeros(1, 2)};
+        optimizer.initialize(weights);
+
+        for (int step = 1; step <= 2000; step++) {
+            gradient[0].set(0, 0, weights[0].get(0, 0) - 1);
+            gradient[0].set(0, 1, 10 * (weights[0].get(0, 1) + 2));
+            optimizer.update(weights, gradient, speed / Math.sqrt(step), () -> quadraticFunction(weights));
+        }
+
+        assertEquals(weights[0].get(0, 0), 1.0, 0.05);
+        assertEquals(weights[0].get(0, 1), -2.0, 0.05);
+    }
+
+    private static double quadraticFunction(Matrix[] weights) {
+        double x = weights[0].get(0, 0) - 1;
+        double y = weights[0].get(0, 1) + 2;
+        return x * x / 2 + 10 * y * y / 2;
+    }
+
+    /**
+     * L-BFGS finds minimum of a quadratic function in a few steps.
+     */
+    @Test
+    public void testLbfgsConvergesQuickly() {
+        Matrix[] weights = {new Matrix(new double[][]{{0.0, 0.0}})};
+        Matrix[] gradient = {Matrix.zeros(1, 2)};
+        Optimizer lbfgs = new LbfgsOptimizer();
+        lbfgs.initialize(weights);
+
+        for (int step = 0; step < 10; step++) {
+            gradient[0].set(0, 0, weights[0].get(0, 0) - 1);
+            gradient[0].set(0, 1, 10 * (weights[0].get(0, 1) + 2));
+            lbfgs.update(weights, gradient, 0, () -> quadraticFunction(weights));
+        }
+
+        assertEquals(weights[0].get(0, 0), 1.0, 1e-6);
+        assertEquals(weights[0].get(0, 1), -2.0, 1e-6);
+    }
+
+    /**
+     * A rejected change of weights and gradient doesn't overwrite the oldest
+     * remembered one when the history is full. On the function
+     * (w - 0.3)^2 / 2 the remembered change gives the exact Newton step.
+     */
+    @Test
+    public void testLbfgsRejectedChangeKeepsHistory() {
+        Matrix[] weights = {new Matrix(new double[][]{{1.0}})};
+        Optimizer lbfgs = new LbfgsOptimizer(1);
+        lbfgs.initialize(weights);
+        DoubleSupplier error = () -> (weights[0].get(0, 0) - 0.3) * (weights[0].get(0, 0) - 0.3) / 2;
+
+        // steepest descent with unit step to 0
+        lbfgs.update(weights, new Matrix[]{new Matrix(new double[][]{{0.7}})}, 0, error);
+        assertEquals(weights[0].get(0, 0), 0.0, 1e-12);
+        // the change (-1, -1) fills the history, Newton step to 0.3
+        lbfgs.update(weights, new Matrix[]{new Matrix(new double[][]{{-0.3}})}, 0, error);
+        assertEquals(weights[0].get(0, 0), 0.3, 1e-12);
+
+        // back at 0 with the same gradient, the change (0, 0) is rejected
+        weights[0].set(0, 0, 0.0);
+        lbfgs.update(weights, new Matrix[]{new Matrix(new double[][]{{-0.3}})}, 0, error);
+
+        assertEquals(weights[0].get(0, 0), 0.3, 1e-12);
+    }
+
+    /**
+     * Full-batch optimizer cannot be combined with mini-batches.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFullBatchOptimizerWithMiniBatches() {
+        NeuralNetwork id = new NeuralNetwork(new Matrix[]{new Matrix(new double[][]{{0, 1}})});
+        Sample s = new Sample(true, new double[]{0});
+        Sample[] samples = {s, s};
+        TrainingOptions options = new TrainingOptions();
+        options.setOptimizer(new LbfgsOptimizer());
+        options.setBatchSize(1);
+
+        NeuralNetworkLearning.gradienDescent(id, samples, samples, 0.1, (Integer, Double) -> 0.1, 100, options);
+    }
+
+    /**
+     * First step of Adam moves every weight by the learning speed against the
+     * sign of its gradient.
+     */
+    @Test
+    public void testFirstAdamStep() {
+        Matrix[] weights = {new Matrix(new double[][]{{1.0, 1.0, 1.0}})};
+        Matrix[] gradient = {new Matrix(new double[][]{{0.001, -50.0, 3.0}})};
+        Optimizer adam = new AdamOptimizer();
+        adam.initialize(weights);
+
+        adam.update(weights, gradient, 0.1, null);
+
+        assertEquals(weights[0].get(0, 0), 0.9, 1e-6);
+        assertEquals(weights[0].get(0, 1), 1.1, 1e-6);
+        assertEquals(weights[0].get(0, 2), 0.9, 1e-6);
+    }
+
+    /**
+     * Initialization resets velocity, so the same steps give the same result.
+     */
+    @Test
+    public void testInitializeResetsState() {
+        Optimizer momentum = new MomentumOptimizer();
+        Matrix[] first = {new Matrix(new double[][]{{1.0}})};
+        Matrix[] second = {new Matrix(new double[][]{{1.0}})};
+
+        momentum.initialize(first);
+        for (int i = 0; i < 5; i++) {
+            momentum.update(first, new Matrix[]{new Matrix(new double[][]{{1.0}})}, 0.1, null);
+        }
+        momentum.initialize(second);
+        for (int i = 0; i < 5; i++) {
+            momentum.update(second, new Matrix[]{new Matrix(new double[][]{{1.0}})}, 0.1, null);
+        }
+
+        assertEquals(second, first);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongMomentum() {
+        new MomentumOptimizer(1.0, false);
+    }
+
+    /**
+     * Training with an adaptive optimizer learns the same as plain gradient
+     * descent.
+     */
+    @Test(dataProvider = "optimizers")
+    public void testGradientDescentWithOptimizer(Optimizer optimizer) {
+        NeuralNetwork id = new NeuralNetwork(new Matrix[]{new Matrix(new double[][]{{0, 1}})});
+        Sample[] samples = {new Sample(true, new double[]{0})};
+        TrainingOptions options = new TrainingOptions();
+        options.setOptimizer(optimizer);
+
+        NeuralNetwork trained = NeuralNetworkLearning.gradienDescent(id, samples, samples, 0.1, (Integer, Double) -> 0.1, 100, options);
+
+        assertTrue(trained.getNeuronWeight(1, 0, 0) > 0, "Bias should have risen.");
+    }
+
+    @DataProvider
+    public Object[][] optimizerNames() {
+        return new Object[][]{
+            {"normalized"}, {"momentum"}, {"nesterov"}, {"rmsprop"}, {"adam"}, {"rprop"}, {"lbfgs"}
+        };
+    }
+
+    /**
+     * Every optimizer with the learning speed and the default settings of the
+     * command line decreases the error of a randomly initialized network.
+     */
+    @Test(dataProvider = "optimizerNames")
+    public void testTrainingWithDefaultSettings(String name) throws IOException {
+        SplittableRandom random = new SplittableRandom(5);
+        Sample[] samples = new Sample[200];
+        for (int i = 0; i < samples.length; i++) {
+            double[] entries = new double[4];
+            for (int j = 0; j < entries.length; j++) {
+                entries[j] = random.nextDouble(-1, 1);
+            }
+            samples[i] = new Sample(entries[0] + entries[1] - entries[2] > 0, entries);
+        }
+        NeuralNetwork initial = NeuralNetworkLearning.initializeWeights(new NeuralNetwork(4, 5, 1), random);
+        Properties prop = Main.setProperties();
+        TrainingOptions options = new TrainingOptions();
+        options.setOptimizer(Main.createOptimizer(name));
+        options.setReproducible(true);
+
+        NeuralNetwork trained = NeuralNetworkLearning.gradienDescent(initial, samples, samples, 0.0,
+                Main.createLearningSpeed(options.getOptimizer(), prop), 200, options);
+
+        double initialError = Evaluation.computeError(initial, samples);
+        assertTrue(Evaluation.computeError(trained, samples) < 0.8 * initialError,
+                "Error should decrease from " + initialError + ".");
+    }
+}
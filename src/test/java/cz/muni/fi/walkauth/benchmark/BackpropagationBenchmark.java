@@ -0,0 +1,77 @@
+package cz.muni.fi.walkauth.benchmark;
+
+import cz.muni.fi.walkauth.Matrix;
+import cz.muni.fi.walkauth.NeuralNetwork;
+import cz.muni.fi.walkauth.NeuralNetworkLearning;
+import cz.muni.fi.walkauth.ParallelBackpropagation;
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of gradient computation with number of threads. The score is the
+ * number of samples processed per second.
+ *
+ * Samples are random with 300 values each (100 entries per sample) and the
+ * network has topology 300-30-1 as configured in config.properties.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=Backpropagation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackpropagationBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private NeuralNetwork network;
+    private Dataset data;
+    private ParallelBackpropagation backpropagation;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Sample[] samples = new Sample[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double[] entries = new double[300];
+            for (int j = 0; j < entries.length; j++) {
+                entries[j] = random.nextGaussian();
+            }
+            samples[i] = new Sample(random.nextBoolean(), entries);
+        }
+        data = Dataset.of(samples);
+        network = NeuralNetworkLearning.initializeWeights(new NeuralNetwork(300, 30, 1));
+        backpropagation = new ParallelBackpropagation(network, threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backpropagation.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public Matrix[] computeGradient() {
+        return backpropagation.computeGradient(network, data);
+    }
+}
@@ -0,0 +1,189 @@
+package cz.muni.fi.walkauth.benchmark;
+
+import cz.muni.fi.walkauth.AdamOptimizer;
+import cz.muni.fi.walkauth.Evaluation;
+import cz.muni.fi.walkauth.LbfgsOptimizer;
+import cz.muni.fi.walkauth.Matrix;
+import cz.muni.fi.walkauth.NeuralNetwork;
+import cz.muni.fi.walkauth.NormalizedGradientDescent;
+import cz.muni.fi.walkauth.Optimizer;
+import cz.muni.fi.walkauth.ParallelBackpropagation;
+import cz.muni.fi.walkauth.RpropOptimizer;
+import cz.muni.fi.walkauth.preprocessing.Dataset;
+import cz.muni.fi.walkauth.preprocessing.Sample;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Number of passes over the training data needed by full-batch optimizers to
+ * reach a target validation error. One pass is one gradient or one error of
+ * the whole training data; the validation error checked after every step is
+ * not counted. The primary score is the time of the whole training, the
+ * secondary scores "passes" and "steps" are summed over all measured
+ * trainings (divide by Cnt for one training). Training stops after MAX_STEPS
+ * steps even if the target is not reached.
+ *
+ * Labels are given by a random teacher network of the same topology, so the
+ * target is reachable. All optimizers start from the same weights.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=Convergence
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConvergenceBenchmark {
+
+    private static final int[] TOPOLOGY = {20, 10, 1};
+    private static final int TRAINING_SAMPLES = 1024;
+    private static final int VALIDATION_SAMPLES = 256;
+    private static final int MAX_STEPS = 2000;
+
+    // target validation error as a fraction of error of the initial weights
+    private static final double TARGET_RATIO = 0.2;
+
+    @Param({"normalized", "adam", "rprop", "lbfgs"})
+    private String optimizer;
+
+    private Sample[] trainingData;
+    private Dataset trainingSet;
+    private Sample[] validationData;
+    private Matrix[] initialWeights;
+    private double targetError;
+    private ParallelBackpropagation backpropagation;
+
+    /**
+     * Counts of one training, reported as secondary results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long passes;
+        public long steps;
+
+        @Setup(Level.Invocation)
+        public void reset() {
+            passes = 0;
+            steps = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        NeuralNetwork teacher = new NeuralNetwork(randomWeights(random, 2.0));
+        trainingData = label(teacher, random, TRAINING_SAMPLES);
+        trainingSet = Dataset.of(trainingData);
+        validationData = label(teacher, random, VALIDATION_SAMPLES);
+        initialWeights = randomWeights(random, 1.0);
+
+        NeuralNetwork initial = new NeuralNetwork(initialWeights);
+        targetError = TARGET_RATIO * Evaluation.computeError(initial, validationData);
+        backpropagation = new ParallelBackpropagation(initial, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backpropagation.close();
+    }
+
+    @Benchmark
+    public double train(Counters counters) {
+        Matrix[] weights = new Matrix[initialWeights.length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = initialWeights[i].copy();
+        }
+        NeuralNetwork network = new NeuralNetwork(weights);
+        Optimizer rule = createOptimizer();
+        rule.initialize(weights);
+
+        double error = Evaluation.computeError(network, validationData);
+        while (error > targetError && counters.steps < MAX_STEPS) {
+            counters.steps++;
+            counters.passes++;
+            // mean gradient and error of a sample, as in the training
+            Matrix[] gradient = backpropagation.computeGradient(network, trainingSet);
+            for (Matrix layer : gradient) {
+                layer.scaleInPlace(1.0 / trainingData.length);
+            }
+            rule.update(weights, gradient, speed(rule, counters.steps, network, counters), () -> {
+                counters.passes++;
+                return Evaluation.computeError(network, trainingData) / trainingData.length;
+            });
+            error = Evaluation.computeError(network, validationData);
+        }
+        return error;
+    }
+
+    private Optimizer createOptimizer() {
+        switch (optimizer) {
+            case "normalized":
+                return new NormalizedGradientDescent();
+            case "adam":
+                return new AdamOptimizer();
+            case "rprop":
+                return new RpropOptimizer();
+            case "lbfgs":
+                return new LbfgsOptimizer();
+            default:
+                throw new IllegalArgumentException("Unknown optimizer " + optimizer + ".");
+        }
+    }
+
+    /**
+     * Learning speed as used by Main with the default settings, except the
+     * decay of learning rate. The normalized optimizer needs the training
+     * error, which counts as a pass.
+     */
+    private double speed(Optimizer rule, long step, NeuralNetwork network, Counters counters) {
+        if (rule instanceof NormalizedGradientDescent) {
+            counters.passes++;
+            return 0.005 * Evaluation.computeError(network, trainingData) / ((step + 8) / 8.0);
+        }
+        return rule.getDefaultLearningRate();
+    }
+
+    private static Matrix[] randomWeights(Random random, double scale) {
+        Matrix[] weights = new Matrix[TOPOLOGY.length - 1];
+        for (int l = 0; l < weights.length; l++) {
+            double range = scale * Math.sqrt(3.0 / TOPOLOGY[l]);
+            double[][] values = new double[TOPOLOGY[l + 1]][TOPOLOGY[l] + 1];
+            for (double[] row : values) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = (random.nextDouble() * 2 - 1) * range;
+                }
+            }
+            weights[l] = new Matrix(values);
+        }
+        return weights;
+    }
+
+    private static Sample[] label(NeuralNetwork teacher, Random random, int count) {
+        Sample[] samples = new Sample[count];
+        for (int i = 0; i < count; i++) {
+            double[] entries = new double[TOPOLOGY[0]];
+            for (int j = 0; j < entries.length; j++) {
+                entries[j] = random.nextGaussian();
+            }
+            samples[i] = new Sample(teacher.computeOutput(entries) > 0, entries);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,76 @@
+package cz.muni.fi.walkauth.benchmark;
+
+import cz.muni.fi.walkauth.Matrix;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares Matrix.multiply with the textbook i-j-k multiplication over 2D
+ * arrays that Matrix used originally.
+ *
+ * Shapes are given as NxKxP (N-K matrix times K-P matrix). The default
+ * topology from config.properties (300 inputs, 30 hidden neurons, 1 output)
+ * gives the 30x301x1 and 1x31x1 products of a forward pass; 30x301x256 is the
+ * hidden layer applied to a batch of 256 samples.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MatrixMultiply
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixMultiplyBenchmark {
+
+    @Param({"30x301x1", "1x31x1", "30x301x256"})
+    private String shape;
+
+    private Matrix a;
+    private Matrix b;
+    private double[][] a2d;
+    private double[][] b2d;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = shape.split("x");
+        int n = Integer.parseInt(dimensions[0]);
+        int k = Integer.parseInt(dimensions[1]);
+        int p = Integer.parseInt(dimensions[2]);
+        a = Matrix.random(n, k);
+        b = Matrix.random(k, p);
+        a2d = a.getValues();
+        b2d = b.getValues();
+    }
+
+    @Benchmark
+    public Matrix multiply() {
+        return a.multiply(b);
+    }
+
+    @Benchmark
+    public double[][] textbookMultiply() {
+        int n = a2d.length;
+        int k = b2d.length;
+        int p = b2d[0].length;
+        double[][] product = new double[n][p];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < p; j++) {
+                for (int l = 0; l < k; l++) {
+                    product[i][j] = product[i][j] + a2d[i][l] * b2d[l][j];
+                }
+            }
+        }
+        return product;
+    }
+}
@@ -0,0 +1,69 @@
+package cz.muni.fi.walkauth.benchmark;
+
+import cz.muni.fi.walkauth.Matrix;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Matrix.multiplyInto with different numbers of matrix threads (the
+ * -m option).
+ *
+ * Shapes are given as NxKxP (N-K matrix times K-P matrix). 512x1501x1 is the
+ * forward pass of one sample through a layer of 512 neurons over 1500
+ * inputs, which is split among the threads; 30x301x1 is the default topology
+ * from config.properties, which stays sequential.
+ *
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=MatrixThreads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixThreadsBenchmark {
+
+    @Param({"512x1501x1", "30x301x1"})
+    private String shape;
+
+    @Param({"1", "2", "4"})
+    private int threads;
+
+    private Matrix a;
+    private Matrix b;
+    private Matrix product;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = shape.split("x");
+        int n = Integer.parseInt(dimensions[0]);
+        int k = Integer.parseInt(dimensions[1]);
+        int p = Integer.parseInt(dimensions[2]);
+        a = Matrix.random(n, k);
+        b = Matrix.random(k, p);
+        product = Matrix.zeros(n, p);
+        Matrix.setParallelism(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Matrix.setParallelism(1);
+    }
+
+    @Benchmark
+    public Matrix multiplyInto() {
+        Matrix.multiplyInto(a, b, product);
+        return product;
+    }
+}
@@ -0,0 +1,76 @@
+package cz.muni.fi.walkauth.benchmark;
+
+import cz.muni.fi.walkauth.preprocessing.RecordingParser;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of all recordings in data/raw by RecordingParser compared with
+ * reading lines by BufferedReader, splitting them and parsing the numbers by
+ * Double.parseDouble as DataManager did originally. The score is the time of
+ * parsing all the files.
+ *
+ * Run from the project directory with:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=RecordingParser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordingParserBenchmark {
+
+    private File[] files;
+
+    @Setup
+    public void setUp() {
+        files = new File("data/raw").listFiles((directory, name) -> name.endsWith(".csv"));
+        if (files == null) {
+            throw new IllegalStateException("Directory data/raw not found, run the benchmark from the project directory.");
+        }
+        Arrays.sort(files);
+    }
+
+    @Benchmark
+    public double recordingParser() throws IOException {
+        double sum = 0;
+        for (File file : files) {
+            double[] values = RecordingParser.parse(file.toPath());
+            sum += values[values.length - 1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double splitAndParseDouble() throws IOException {
+        double sum = 0;
+        for (File file : files) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line = reader.readLine();
+                while (line != null) {
+                    String[] coordinates = line.split(",");
+                    sum += Double.parseDouble(coordinates[1]);
+                    sum += Double.parseDouble(coordinates[2]);
+                    sum += Double.parseDouble(coordinates[3]);
+                    line = reader.readLine();
+                }
+            }
+        }
+        return sum;
+    }
+}
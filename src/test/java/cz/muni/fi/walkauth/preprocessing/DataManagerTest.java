@@ -0,0 +1,279 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for loading of recordings and windows over them.
+ */
+public class DataManagerTest {
+
+	private static Path createDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("recordings");
+		directory.toFile().deleteOnExit();
+		return directory;
+	}
+
+	private static void writeFile(Path directory, String name, String content) throws IOException {
+		Path file = directory.resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		file.toFile().deleteOnExit();
+	}
+
+	/**
+	 * Only CSV files are listed, sorted by name.
+	 */
+	@Test
+	public void testListRecordings() throws IOException {
+		Path directory = createDirectory();
+		writeFile(directory, "2.csv", "0,1,2,3\n");
+		writeFile(directory, "10.csv", "0,1,2,3\n");
+		writeFile(directory, "1.csv", "0,1,2,3\n");
+		writeFile(directory, "README", "Recordings of walks.\n");
+
+		List<String> names = new ArrayList<>();
+		for (File file : DataManager.listRecordings(directory.toFile())) {
+			names.add(file.getName());
+		}
+
+		assertEquals(names.toArray(), new String[]{"1.csv", "10.csv", "2.csv"});
+	}
+
+	/**
+	 * Recordings are returned in the order of the files, regardless of which
+	 * one is loaded first.
+	 */
+	@Test
+	public void testLoadRecordings() throws IOException {
+		Path directory = createDirectory();
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			StringBuilder content = new StringBuilder();
+			// longer files first, so they tend to be finished last
+			for (int line = 0; line < 1000 * (10 - i); line++) {
+				content.append(line).append(',').append(i).append(",0,0\n");
+			}
+			writeFile(directory, i + ".csv", content.toString());
+			files.add(directory.resolve(i + ".csv").toFile());
+		}
+
+		List<double[]> recordings = DataManager.loadRecordings(files);
+
+		assertEquals(recordings.size(), 10);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(recordings.get(i).length, 3 * 1000 * (10 - i));
+			assertEquals(recordings.get(i)[0], (double) i);
+		}
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void testLoadInvalidRecording() throws IOException {
+		Path directory = createDirectory();
+		writeFile(directory, "1.csv", "0,1,2,3\n");
+		writeFile(directory, "2.csv", "0,1,x,3\n");
+
+		DataManager.loadRecordings(DataManager.listRecordings(directory.toFile()));
+	}
+
+	/**
+	 * Overlapping windows are views into the block of all recordings, they
+	 * start at every stride and never span two files.
+	 */
+	@Test
+	public void testOverlappingWindows() {
+		List<File> files = Arrays.asList(new File("1.csv"), new File("2.csv"));
+		List<double[]> recordings = Arrays.asList(
+				new double[]{1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4, 5, 5, 5},
+				new double[]{-1, -1, -1, -2, -2, -2, -3, -3, -3});
+
+		Dataset windows = DataManager.toDataset(files, recordings, "2.csv", 2, 1);
+
+		assertEquals(windows.getValues().length, 24);
+		assertEquals(windows.size(), 6);
+		int[] offsets = new int[windows.size()];
+		for (int i = 0; i < windows.size(); i++) {
+			offsets[i] = windows.getOffset(i);
+		}
+		assertEquals(offsets, new int[]{0, 3, 6, 9, 15, 18});
+		assertFalse(windows.isPositiveUserData(3));
+		assertTrue(windows.isPositiveUserData(4));
+		assertEquals(windows.getSample(1).getEntries(), new double[]{2, 2, 2, 3, 3, 3});
+		assertEquals(windows.getSample(5).getEntries(), new double[]{-2, -2, -2, -3, -3, -3});
+	}
+
+	/**
+	 * Windows with stride of their length follow one after another without
+	 * skipping any entry; the rest of a file shorter than a window is left
+	 * out.
+	 */
+	@Test
+	public void testAdjacentWindows() {
+		List<File> files = Arrays.asList(new File("1.csv"), new File("2.csv"));
+		List<double[]> recordings = Arrays.asList(
+				new double[]{1, 1, 1, 2, 2, 2, 3, 3, 3, 4, 4, 4, 5, 5, 5},
+				new double[]{-1, -1, -1});
+
+		Dataset windows = DataManager.toDataset(files, recordings, "1.csv", 2, 2);
+
+		assertEquals(windows.size(), 2);
+		assertEquals(windows.getSample(0).getEntries(), new double[]{1, 1, 1, 2, 2, 2});
+		assertEquals(windows.getSample(1).getEntries(), new double[]{3, 3, 3, 4, 4, 4});
+		assertEquals(windows.getPositiveCount(), 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidWindowStride() throws IOException {
+		new DataManager().prepareData(2, 0, createDirectory().toString(), "1.csv", 0.5f, 0.7f, 0.2f, 0.1f);
+	}
+
+	/**
+	 * Windows of different sets are separated by at least one window, the
+	 * regions of the sets have sizes by their ratios.
+	 */
+	@Test
+	public void testAssignRegions() {
+		List<double[]> recordings = Arrays.asList(new double[3 * 1000], new double[3 * 500], new double[3 * 10]);
+		float[] ratios = {0.7f, 0.2f, 0.1f};
+
+		int[] assignment = DataManager.assignRegions(recordings, 10, 2, ratios, new SplittableRandom(1));
+
+		int[] entries = {1000, 500, 10};
+		int window = 0;
+		int[] counts = new int[ratios.length];
+		for (int entryCount : entries) {
+			int lastSet = -1;
+			int lastEnd = 0;
+			for (int start = 0; start + 10 <= entryCount; start += 2, window++) {
+				int set = assignment[window];
+				if (set < 0) {
+					continue;
+				}
+				counts[set]++;
+				if (lastSet >= 0 && set != lastSet) {
+					assertTrue(start >= lastEnd + 10, "Windows of sets " + lastSet + " and " + set + " are too close.");
+				}
+				lastSet = set;
+				lastEnd = start + 10;
+			}
+		}
+		assertEquals(window, assignment.length);
+		// regions of 686, 196 and 98 entries and of 336, 96 and 48 entries,
+		// the file shorter than two gaps has none
+		assertEquals(counts, new int[]{339 + 164, 94 + 44, 45 + 20});
+	}
+
+	/**
+	 * Overlapping windows of different sets never contain the same entry.
+	 */
+	@Test
+	public void testOverlappingWindowsDoNotLeak() throws IOException {
+		Path directory = createDirectory();
+		directory.resolve(DataManager.CACHE_FILE_NAME).toFile().deleteOnExit();
+		for (int i = 1; i <= 3; i++) {
+			StringBuilder content = new StringBuilder();
+			for (int line = 0; line < 600; line++) {
+				content.append(line).append(',').append(i * 1000 + line).append(",0,0\n");
+			}
+			writeFile(directory, i + ".csv", content.toString());
+		}
+		DataManager dataManager = new DataManager(7);
+
+		dataManager.prepareData(20, 5, directory.toString(), "1.csv", 0.5f, 0.6f, 0.2f, 0.2f);
+
+		Dataset[] sets = {dataManager.getTrainingData(), dataManager.getTestingData(), dataManager.getValidationData()};
+		int[] owner = new int[sets[0].getValues().length / 3];
+		for (int set = 0; set < sets.length; set++) {
+			assertTrue(sets[set].size() > 0);
+			for (int s = 0; s < sets[set].size(); s++) {
+				int first = sets[set].getOffset(s) / 3;
+				for (int entry = first; entry < first + 20; entry++) {
+					assertTrue(owner[entry] == 0 || owner[entry] == set + 1, "Entry " + entry + " is in two sets.");
+					owner[entry] = set + 1;
+				}
+			}
+		}
+	}
+
+	private static int[] range(int from, int to) {
+		int[] range = new int[to - from];
+		for (int i = 0; i < range.length; i++) {
+			range[i] = from + i;
+		}
+		return range;
+	}
+
+	/**
+	 * Sets have the requested numbers of positive and negative samples and
+	 * no sample is in two sets.
+	 */
+	@Test
+	public void testSplit() {
+		int[][] sets = DataManager.split(range(0, 100), range(100, 1000),
+				new int[]{70, 20, 10}, new int[]{63, 18, 9}, new SplittableRandom(1));
+
+		boolean[] used = new boolean[1000];
+		int[] positiveCounts = new int[3];
+		int[] negativeCounts = new int[3];
+		for (int i = 0; i < sets.length; i++) {
+			for (int index : sets[i]) {
+				assertFalse(used[index]);
+				used[index] = true;
+				if (index < 100) {
+					positiveCounts[i]++;
+				} else {
+					negativeCounts[i]++;
+				}
+			}
+		}
+		assertEquals(positiveCounts, new int[]{70, 20, 10});
+		assertEquals(negativeCounts, new int[]{63, 18, 9});
+	}
+
+	/**
+	 * The last sets get fewer samples if there are not enough of them.
+	 */
+	@Test
+	public void testSplitNotEnoughSamples() {
+		int[][] sets = DataManager.split(range(0, 10), range(10, 20),
+				new int[]{7, 2, 2}, new int[]{7, 2, 2}, new SplittableRandom(1));
+
+		assertEquals(sets[0].length, 14);
+		assertEquals(sets[1].length, 4);
+		assertEquals(sets[2].length, 2);
+	}
+
+	@Test
+	public void testSplitWithSeed() {
+		int[][] first = DataManager.split(range(0, 50), range(50, 100),
+				new int[]{30, 20}, new int[]{30, 20}, new SplittableRandom(42));
+		int[][] second = DataManager.split(range(0, 50), range(50, 100),
+				new int[]{30, 20}, new int[]{30, 20}, new SplittableRandom(42));
+
+		assertEquals(first[0], second[0]);
+		assertEquals(first[1], second[1]);
+	}
+
+	/**
+	 * Different windows with the same values are found, regardless of their
+	 * position in the sets.
+	 */
+	@Test
+	public void testContainsAny() {
+		Dataset dataset = new Dataset(new double[]{1, 2, 3, 1, 2, 5},
+				new int[]{0, 1, 2, 3, 4}, new boolean[]{true, true, true, true, false}, 2);
+
+		assertTrue(DataManager.containsAny(dataset.subset(new int[]{1, 0}), dataset.subset(new int[]{2, 3})));
+		// same values, different label
+		assertFalse(DataManager.containsAny(dataset.subset(new int[]{0}), dataset.subset(new int[]{4, 1, 2})));
+		assertFalse(DataManager.containsAny(dataset.subset(new int[]{}), dataset.subset(new int[]{0})));
+	}
+}
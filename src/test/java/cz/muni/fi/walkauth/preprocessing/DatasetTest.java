@@ -0,0 +1,91 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for data set stored in one block.
+ */
+public class DatasetTest {
+
+	private static Dataset createDataset() {
+		return Dataset.of(
+				new Sample(true, new double[]{1, 2}),
+				new Sample(false, new double[]{3, 4}),
+				new Sample(false, new double[]{5, 6}),
+				new Sample(true, new double[]{7, 8})
+		);
+	}
+
+	@Test
+	public void testOf() {
+		Dataset dataset = createDataset();
+
+		assertEquals(dataset.size(), 4);
+		assertEquals(dataset.getSampleLength(), 2);
+		assertEquals(dataset.getValues(), new double[]{1, 2, 3, 4, 5, 6, 7, 8});
+		assertEquals(dataset.getOffset(2), 4);
+		assertTrue(dataset.isPositiveUserData(3));
+		assertEquals(dataset.getPositiveCount(), 2);
+		assertEquals(dataset.getSample(1), new Sample(false, new double[]{3, 4}));
+	}
+
+	/**
+	 * Subset shares the block and addresses the samples by indices, also a
+	 * subset of a subset.
+	 */
+	@Test
+	public void testSubset() {
+		Dataset dataset = createDataset();
+
+		Dataset subset = dataset.subset(new int[]{3, 1, 2});
+		Dataset subsubset = subset.subset(new int[]{2, 0});
+
+		assertSame(subset.getValues(), dataset.getValues());
+		assertEquals(subset.size(), 3);
+		assertEquals(subset.getOffset(0), 6);
+		assertTrue(subset.isPositiveUserData(0));
+		assertFalse(subset.isPositiveUserData(1));
+		assertEquals(subsubset.getSample(0), new Sample(false, new double[]{5, 6}));
+		assertEquals(subsubset.getSample(1), new Sample(true, new double[]{7, 8}));
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void testSubsetOutOfBounds() {
+		createDataset().subset(new int[]{0, 4});
+	}
+
+	/**
+	 * Overlapping samples share values of the block.
+	 */
+	@Test
+	public void testOverlappingSamples() {
+		double[] block = {1, 2, 3, 4};
+		Dataset dataset = new Dataset(block, new int[]{0, 1, 2}, new boolean[]{true, true, false}, 2);
+
+		assertEquals(dataset.getSample(1), new Sample(true, new double[]{2, 3}));
+		assertEquals(dataset.getSample(2), new Sample(false, new double[]{3, 4}));
+		assertSame(dataset.getValues(), block);
+	}
+
+	@Test(expectedExceptions = IndexOutOfBoundsException.class)
+	public void testSampleOutOfBlock() {
+		new Dataset(new double[]{1, 2, 3, 4}, new int[]{0, 3}, new boolean[]{true, false}, 2);
+	}
+
+	@Test
+	public void testSampleEquals() {
+		Dataset dataset = createDataset();
+		Dataset other = Dataset.of(new Sample(false, new double[]{5, 6}), new Sample(true, new double[]{5, 6}));
+
+		assertTrue(dataset.sampleEquals(2, other, 0));
+		assertFalse(dataset.sampleEquals(2, other, 1));
+		assertFalse(dataset.sampleEquals(1, other, 0));
+		assertEquals(dataset.sampleHashCode(2), other.sampleHashCode(0));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testDifferentSampleLengths() {
+		Dataset.of(new Sample(true, new double[]{1, 2}), new Sample(true, new double[]{1}));
+	}
+}
@@ -0,0 +1,81 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for normalization of data.
+ */
+public class NormalizationTest {
+
+	@Test
+	public void testMeanAndDeviation() {
+		Normalization normalization = new Normalization();
+		assertNull(normalization.getMean());
+
+		normalization.computeMeanAndDeviation(Dataset.of(
+				new Sample(true, new double[]{2, 4, 4, 4}),
+				new Sample(false, new double[]{5, 5, 7, 9})));
+
+		assertEquals(normalization.getMean(), 5.0, 1e-12);
+		assertEquals(normalization.getDeviation(), 2.0, 1e-12);
+	}
+
+	/**
+	 * Values shared by overlapping samples are normalized once and also
+	 * samples of other data sets sharing the block are normalized.
+	 */
+	@Test
+	public void testNormalizeInPlace() {
+		double[] block = {1, 2, 3, 4, 5, 6};
+		Dataset dataset = new Dataset(block, new int[]{0, 3}, new boolean[]{true, false}, 3);
+		Normalization normalization = new Normalization();
+		normalization.computeMeanAndDeviation(dataset);
+
+		normalization.normalizeInPlace(dataset.subset(new int[]{1}));
+
+		double deviation = Math.sqrt(17.5 / 6);
+		assertEquals(block[0], -2.5 / deviation, 1e-12);
+		assertEquals(block[5], 2.5 / deviation, 1e-12);
+	}
+
+	/**
+	 * Each axis gets mean 0 and deviation 1, statistics are updated by
+	 * further data.
+	 */
+	@Test
+	public void testPerAxis() {
+		Dataset first = Dataset.of(new Sample(true, new double[]{1, 10, -100, 3, 30, -300}));
+		Dataset second = Dataset.of(new Sample(false, new double[]{5, 50, -500, 7, 70, -700}));
+		Normalization normalization = new Normalization();
+		normalization.setPerAxis(true);
+		normalization.computeMeanAndDeviation(first);
+		normalization.update(second);
+
+		normalization.normalizeInPlace(second);
+
+		assertEquals(normalization.getMean(0), 4.0, 1e-12);
+		assertEquals(normalization.getMean(2), -400.0, 1e-12);
+		double deviation = Math.sqrt(5);
+		double[] expected = {1, 1, -1, 3, 3, -3};
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(second.getValues()[i], expected[i] / deviation, 1e-12);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testPerAxisMisalignedSample() {
+		double[] block = {1, 2, 3, 4, 5, 6, 7};
+		Dataset dataset = new Dataset(block, new int[]{1}, new boolean[]{true}, 6);
+		Normalization normalization = new Normalization();
+		normalization.setPerAxis(true);
+		normalization.computeMeanAndDeviation(dataset);
+
+		normalization.normalizeInPlace(dataset);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testNormalizeBeforeComputing() {
+		new Normalization().normalizeInPlace(Dataset.of(new Sample(true, new double[]{1})));
+	}
+}
@@ -0,0 +1,146 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.*;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the binary cache of recordings.
+ */
+public class RecordingCacheTest {
+
+	private Path directory;
+	private Path cacheFile;
+	private List<File> files;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("recordings");
+		directory.toFile().deleteOnExit();
+		cacheFile = directory.resolve(DataManager.CACHE_FILE_NAME);
+		cacheFile.toFile().deleteOnExit();
+		files = Arrays.asList(
+				writeFile("1.csv", "0,1,2,3\n1,4,5,6\n2,7,8,9\n3,10,11,12\n4,13,14,15\n"),
+				writeFile("2.csv", "0,-1,-2,-3\n1,-4,-5,-6\n2,-7,-8,-9\n")
+		);
+	}
+
+	private File writeFile(String name, String content) throws IOException {
+		Path file = directory.resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		file.toFile().deleteOnExit();
+		return file.toFile();
+	}
+
+	/**
+	 * Recordings are parsed and written into the cache on the first load and
+	 * read from the cache on the second one.
+	 */
+	@Test
+	public void testLoadRecordings() throws IOException {
+		List<double[]> parsed = DataManager.loadRecordings(files, cacheFile);
+		assertTrue(Files.isRegularFile(cacheFile));
+
+		List<double[]> cached = RecordingCache.read(cacheFile, files);
+
+		assertNotNull(cached);
+		assertEquals(cached.size(), 2);
+		assertEquals(parsed.get(0), new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15});
+		assertEquals(cached.get(0), parsed.get(0));
+		assertEquals(parsed.get(1), new double[]{-1, -2, -3, -4, -5, -6, -7, -8, -9});
+		assertEquals(cached.get(1), parsed.get(1));
+	}
+
+	@Test
+	public void testMissingCache() throws IOException {
+		assertNull(RecordingCache.read(cacheFile, files));
+	}
+
+	@Test
+	public void testChangedRecording() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+		Path file = files.get(1).toPath();
+		FileTime modified = Files.getLastModifiedTime(file);
+
+		// same size and modification time, but different content
+		writeFile("2.csv", "0,-1,-2,-3\n1,-4,-5,-6\n2,-7,-8,-0\n");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 1000));
+
+		assertNull(RecordingCache.read(cacheFile, files));
+	}
+
+	/**
+	 * Modification time alone doesn't invalidate the cache if the content is
+	 * the same.
+	 */
+	@Test
+	public void testTouchedRecording() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+		Path file = files.get(0).toPath();
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+		assertNotNull(RecordingCache.read(cacheFile, files));
+	}
+
+	@Test
+	public void testDifferentRecordings() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+
+		assertNull(RecordingCache.read(cacheFile, files.subList(0, 1)));
+		assertNull(RecordingCache.read(cacheFile, Arrays.asList(files.get(1), files.get(0))));
+	}
+
+	@Test
+	public void testDamagedCache() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+		byte[] content = Files.readAllBytes(cacheFile);
+		Files.write(cacheFile, Arrays.copyOf(content, 40));
+
+		assertNull(RecordingCache.read(cacheFile, files));
+	}
+
+	/**
+	 * Damaged length of a file name in the header invalidates the cache
+	 * instead of allocating an array of that length.
+	 */
+	@Test
+	public void testDamagedNameLength() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+		byte[] content = Files.readAllBytes(cacheFile);
+		// length of the first name follows magic, version, header length and count
+		for (int length : new int[]{-1, Integer.MAX_VALUE}) {
+			ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).putInt(4 * Integer.BYTES, length);
+			Files.write(cacheFile, content);
+
+			assertNull(RecordingCache.read(cacheFile, files));
+		}
+	}
+
+	/**
+	 * Number of values of a recording must be a multiple of the number of
+	 * coordinates.
+	 */
+	@Test
+	public void testDamagedValueCount() throws IOException {
+		DataManager.loadRecordings(files, cacheFile);
+		byte[] content = Files.readAllBytes(cacheFile);
+		// name "1.csv" is followed by size, modification time and checksum
+		int position = 4 * Integer.BYTES + Integer.BYTES + 5 + 3 * Long.BYTES;
+		ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals(buffer.getLong(position), 15);
+		buffer.putLong(position, 14);
+		Files.write(cacheFile, content);
+
+		assertNull(RecordingCache.read(cacheFile, files));
+	}
+}
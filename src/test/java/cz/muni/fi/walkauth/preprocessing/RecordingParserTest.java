@@ -0,0 +1,151 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for parsing of CSV recordings.
+ */
+public class RecordingParserTest {
+
+	private static Path writeFile(String content) throws IOException {
+		Path file = Files.createTempFile("recording", ".csv");
+		file.toFile().deleteOnExit();
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	/**
+	 * Values parsed from the bytes are exactly the same as from
+	 * Double.parseDouble, including the fallback cases.
+	 */
+	@Test
+	public void testParse() throws IOException {
+		Path file = writeFile("0,-3.4051,7.0826,5.3664\n"
+				+ "0.029693,0.1,-0,10.42\r\n"
+				+ "1,1e3,+2.5,0.12345678901234567890\n"
+				+ "2,-.5,7.,123456789012345678");
+
+		double[] values = RecordingParser.parse(file);
+
+		assertEquals(values, new double[]{
+			-3.4051, 7.0826, 5.3664,
+			0.1, -0.0, 10.42,
+			1e3, 2.5, Double.parseDouble("0.12345678901234567890"),
+			-0.5, 7.0, 123456789012345678.0
+		});
+	}
+
+	/**
+	 * Lines longer than a chunk and files of many chunks are read whole.
+	 */
+	@Test
+	public void testParseLongFile() throws IOException {
+		StringBuilder content = new StringBuilder();
+		content.append("0,1,2,");
+		for (int i = 0; i < 100000; i++) {
+			content.append('0');
+		}
+		content.append("3\n");
+		for (int i = 0; i < 20000; i++) {
+			content.append(i).append(',').append(i / 100.0).append(",-").append(i).append(",0.5\n");
+		}
+
+		double[] values = RecordingParser.parse(writeFile(content.toString()), 1 << 12);
+
+		assertEquals(values.length, 3 * 20001);
+		assertEquals(values[2], 3.0);
+		assertEquals(values[3 * 12346], 123.45);
+		assertEquals(values[3 * 20000 + 1], -19999.0);
+	}
+
+	/**
+	 * Result doesn't depend on how the file is split into chunks, including
+	 * chunks of a single line and a last line without the separator.
+	 */
+	@Test
+	public void testParseInChunks() throws IOException {
+		Path file = writeFile("0,1,2,3\n1,4,5,6\r\n2,7,8,9\n3,10,11,12");
+		double[] expected = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+
+		for (int chunkSize = 1; chunkSize <= 40; chunkSize++) {
+			assertEquals(RecordingParser.parse(file, chunkSize), expected, "chunk size " + chunkSize);
+		}
+		assertEquals(RecordingParser.parse(writeFile("")), new double[0]);
+	}
+
+	/**
+	 * Error message contains the line and its number.
+	 */
+	@Test
+	public void testWrongNumberOfCoordinates() throws IOException {
+		Path file = writeFile("0,1,2,3\n1,1,2,3,4\n");
+		try {
+			RecordingParser.parse(file);
+			fail("Line with 4 coordinates should not be accepted.");
+		} catch (IllegalStateException ex) {
+			assertTrue(ex.getMessage().contains("1,1,2,3,4 on line 2"), ex.getMessage());
+		}
+	}
+
+	/**
+	 * Line numbers are counted across chunks.
+	 */
+	@Test
+	public void testLineNumberInLaterChunk() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append(i).append(",1,2,3\n");
+		}
+		content.append("1000,1,x,3\n");
+		try {
+			RecordingParser.parse(writeFile(content.toString()), 64);
+			fail("Invalid number should not be accepted.");
+		} catch (NumberFormatException ex) {
+			assertTrue(ex.getMessage().contains("on line 1001 "), ex.getMessage());
+		}
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void testInvalidNumber() throws IOException {
+		RecordingParser.parse(writeFile("0,1,x,3\n"));
+	}
+
+	/**
+	 * Recordings in the data directory are parsed the same as by splitting
+	 * the lines.
+	 */
+	@Test
+	public void testRawData() throws IOException {
+		File[] files = new File("data/raw").listFiles((directory, name) -> name.endsWith(".csv"));
+		assertNotNull(files);
+		for (File file : files) {
+			List<Double> expected = new ArrayList<>();
+			try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.US_ASCII)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] coordinates = line.split(",");
+					for (int i = 1; i < coordinates.length; i++) {
+						expected.add(Double.parseDouble(coordinates[i]));
+					}
+				}
+			}
+
+			double[] values = RecordingParser.parse(file.toPath());
+
+			assertEquals(values.length, expected.size(), file.getName());
+			for (int i = 0; i < values.length; i++) {
+				assertEquals(values[i], expected.get(i).doubleValue(), file.getName() + " at " + i);
+			}
+		}
+	}
+}
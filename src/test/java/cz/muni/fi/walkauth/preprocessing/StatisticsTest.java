@@ -0,0 +1,93 @@
+package cz.muni.fi.walkauth.preprocessing;
+
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for one-pass statistics of values.
+ */
+public class StatisticsTest {
+
+	private static double[] randomValues(int count) {
+		Random random = new Random(3);
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = 1000 + random.nextGaussian() * (1 + i % 3);
+		}
+		return values;
+	}
+
+	@Test
+	public void testMeanAndVariance() {
+		Statistics statistics = new Statistics(1);
+		statistics.add(new double[]{2, 4, 4, 4, 5, 5, 7, 9}, 0, 8);
+
+		assertEquals(statistics.getCount(0), 8);
+		assertEquals(statistics.getMean(0), 5.0, 1e-12);
+		assertEquals(statistics.getVariance(0), 4.0, 1e-12);
+	}
+
+	/**
+	 * Values alternate among channels, total statistics are the same as of
+	 * all values in one channel.
+	 */
+	@Test
+	public void testChannels() {
+		double[] values = randomValues(3000);
+		Statistics perChannel = new Statistics(3);
+		perChannel.add(values, 0, values.length);
+		Statistics single = new Statistics(1);
+		single.add(values, 0, values.length);
+
+		double sum = 0;
+		for (int i = 1; i < values.length; i += 3) {
+			sum += values[i];
+		}
+		assertEquals(perChannel.getCount(1), 1000);
+		assertEquals(perChannel.getMean(1), sum / 1000, 1e-9);
+		assertTrue(perChannel.getVariance(2) > perChannel.getVariance(0));
+		assertEquals(perChannel.total().getCount(0), 3000);
+		assertEquals(perChannel.total().getMean(0), single.getMean(0), 1e-9);
+		assertEquals(perChannel.total().getVariance(0), single.getVariance(0), 1e-9);
+	}
+
+	/**
+	 * Merged statistics of parts are the same as statistics of the whole.
+	 */
+	@Test
+	public void testMerge() {
+		double[] values = randomValues(999);
+		Statistics whole = new Statistics(3);
+		whole.add(values, 0, values.length);
+
+		Statistics merged = new Statistics(3);
+		Statistics part = new Statistics(3);
+		part.add(values, 0, 300);
+		merged.merge(part);
+		merged.merge(new Statistics(3));
+		part = new Statistics(3);
+		part.add(values, 300, values.length);
+		merged.merge(part);
+
+		for (int c = 0; c < 3; c++) {
+			assertEquals(merged.getCount(c), whole.getCount(c));
+			assertEquals(merged.getMean(c), whole.getMean(c), 1e-9);
+			assertEquals(merged.getVariance(c), whole.getVariance(c), 1e-9);
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		Statistics statistics = new Statistics(2);
+
+		assertEquals(statistics.getCount(0), 0);
+		assertTrue(Double.isNaN(statistics.getMean(1)));
+		assertTrue(Double.isNaN(statistics.total().getVariance(0)));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMergeDifferentChannels() {
+		new Statistics(3).merge(new Statistics(1));
+	}
+}